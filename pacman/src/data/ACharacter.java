@@ -10,9 +10,9 @@ import java.awt.*;
 public abstract class ACharacter implements Element {
 
     /**
-     * The location of this object.
+     * The packed location of this object (see {@link ElementImpl#pack(int, int)}).
      */
-    private Point location;
+    private final long location;
 
     /**
      * This object constructor. It is used to create an instance of this class with the right arguments.
@@ -20,22 +20,40 @@ public abstract class ACharacter implements Element {
      * @param level The current level.
      * @param x     The character x position relatively to the game board.
      * @param y     The character y position relatively to the game board.
+     * @pre x >= 0 && y >= 0 && x < level.getSize() && y < level.getSize() && !level.isWall(x, y)
      */
     public ACharacter(Level level, int x, int y) {
         super();
+        assert x >= 0 && y >= 0 && x < level.getSize() && y < level.getSize() && !level.isWall(x, y) : "precondition violated";
 
-        if (!level.isWall(x, y) && x >= 0 && y >= 0 && x < level.getSize() && y < level.getSize()) {
-            this.location = new Point(x, y);
-        }
+        this.location = ElementImpl.pack(x, y);
+    }
+
+    /**
+     * Give the column number of the initial location of the element in the game board
+     *
+     * @return the element column number
+     */
+    public int getX() {
+        return (int) (location >> 32);
+    }
+
+    /**
+     * Give the row number of the initial location of the element in the game board
+     *
+     * @return the element row number
+     */
+    public int getY() {
+        return (int) location;
     }
 
     /**
      * Give the initial location of the element in the game board, s.t. x is the
      * column number and y the row number
      *
-     * @return the element location
+     * @return a new point at the element location
      */
     public Point getLocation() {
-        return this.location;
+        return new Point(getX(), getY());
     }
 }
@@ -0,0 +1,221 @@
+package data;
+
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * This abstract class is used to simplify the code of the levels that store
+ * their board as one {@link CellCode} per cell. It manages the elements, the
+ * fruits table and the properties; the subclasses only give the code of a
+ * cell.
+ *
+ * @author Leia
+ * @inv getElements() != null && getSize() >= 0 && getProperties() != null
+ */
+public abstract class APackedLevel implements Level {
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the elements of this level (pacman and fruits), at their initial
+     * locations
+     */
+    private final Collection<Element> elements;
+
+    /**
+     * the elements of this level in primitive arrays
+     */
+    private final ElementTable elementTable;
+
+    /**
+     * the number of rows/columns of the board
+     */
+    private final int size;
+
+    /**
+     * the fruits table, indexed by the codes of the cells
+     */
+    private final Fruit[] fruitTable;
+
+    /**
+     * the level properties
+     */
+    private final Properties properties;
+
+    /**
+     * the typed settings, parsed from the properties when the level is built
+     */
+    private final LevelSettings settings;
+
+    /**
+     * the navigation graph of the board, computed on the first request (null
+     * until then)
+     */
+    private volatile NavigationGraph navigationGraph;
+
+    /**
+     * the hash of the content, computed on the first request (null until
+     * then)
+     */
+    private volatile ContentHash contentHash;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * This object constructor. It is used to create an instance of this class
+     * with the right arguments.
+     *
+     * @param elements   the elements of this level
+     * @param size       the number of rows/columns of the board
+     * @param fruitTable the fruits table, indexed by the codes of the cells
+     * @param properties the level properties
+     * @pre elements != null && fruitTable != null && properties != null && size >= 0
+     * @pre fruitTable.length <= CellCode.MAX_FRUITS
+     */
+    public APackedLevel(Collection<Element> elements, int size, Fruit[] fruitTable, Properties properties) {
+        assert elements != null && fruitTable != null && properties != null && size >= 0 : "precondition violated";
+        assert fruitTable.length <= CellCode.MAX_FRUITS : "precondition violated";
+
+        this.elements = elements;
+        this.elementTable = new ElementTable(elements);
+        this.size = size;
+        this.fruitTable = fruitTable;
+        this.properties = properties;
+        this.settings = LevelSettings.of(properties);
+    }
+
+    //--------------------------------------------------------------
+    // Abstract method
+    //--------------------------------------------------------------
+
+    /**
+     * Give the code of the cell at the given location
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     * @return the {@link CellCode} of the cell
+     * @pre x >= 0 && x < getSize() && y >= 0 && y < getSize()
+     */
+    protected abstract byte getCode(int x, int y);
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    @Override
+    public Collection<Element> getElements() {
+        return elements;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public boolean isWall(int x, int y) {
+        assert x >= 0 && x < getSize() && x >= 0 && y < getSize() : "precondition violated";
+
+        return getCode(x, y) == CellCode.WALL;
+    }
+
+    @Override
+    public long getWallRow(int y, int word) {
+        assert y >= 0 && y < getSize() && word >= 0 && word < getWallRowWords() : "precondition violated";
+
+        int from = word << 6;
+        int to = Math.min(from + 64, size);
+        long bits = to - from == 64 ? 0 : -1L << (to - from); // the cells beyond the row end
+        for (int x = from; x < to; x++) {
+            if (getCode(x, y) == CellCode.WALL) {
+                bits |= 1L << x;
+            }
+        }
+        return bits;
+    }
+
+    @Override
+    public Fruit getFruit(int x, int y) {
+        assert x >= 0 && x < getSize() && x >= 0 && y < getSize() : "precondition violated";
+
+        int index = CellCode.fruitIndex(getCode(x, y));
+        return index < 0 ? null : fruitTable[index];
+    }
+
+    @Override
+    public int getFruitIndex(int x, int y) {
+        assert x >= 0 && x < getSize() && x >= 0 && y < getSize() : "precondition violated";
+
+        return CellCode.fruitIndex(getCode(x, y));
+    }
+
+    @Override
+    public int getFruitValue(int x, int y) {
+        assert x >= 0 && x < getSize() && x >= 0 && y < getSize() : "precondition violated";
+
+        int index = CellCode.fruitIndex(getCode(x, y));
+        return index < 0 ? 0 : fruitTable[index].getValue();
+    }
+
+    @Override
+    public int getFruitCount() {
+        return fruitTable.length;
+    }
+
+    @Override
+    public Fruit getFruitByIndex(int index) {
+        assert index >= 0 && index < getFruitCount() : "precondition violated";
+
+        return fruitTable[index];
+    }
+
+    @Override
+    public Properties getProperties() {
+        return properties;
+    }
+
+    @Override
+    public ElementTable getElementTable() {
+        return elementTable;
+    }
+
+    @Override
+    public LevelSettings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public NavigationGraph getNavigationGraph() {
+        NavigationGraph graph = navigationGraph;
+        if (graph == null) {
+            // the graph of a large board is only computed if it is used
+            graph = navigationGraph = NavigationGraph.of(this);
+        }
+        return graph;
+    }
+
+    @Override
+    public ContentHash getContentHash() {
+        ContentHash hash = contentHash;
+        if (hash == null) {
+            // the board of a large level is only read if the hash is used
+            hash = contentHash = ContentHash.of(this);
+        }
+        return hash;
+    }
+
+    //--------------------------------------------------------------
+    // Protected method
+    //--------------------------------------------------------------
+
+    /**
+     * Check the class invariants
+     */
+    protected final void invariant() {
+        assert getElements() != null && getSize() >= 0 && getProperties() != null : "Invariant violated";
+    }
+}
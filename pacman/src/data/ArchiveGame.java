@@ -0,0 +1,259 @@
+package data;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.*;
+import java.text.ParseException;
+import java.util.*;
+
+/**
+ * Implementation of the {@link Game} interface that loads game levels from
+ * the entries named "levelN" (or "levelN.bin", preferred when it is not
+ * older, as in {@link GameImpl}) of a directory of any NIO file system: a
+ * zip or jar archive, or the classpath resources. The entries are parsed
+ * directly from the archive, without being extracted.
+ * <p>
+ * Each archive is opened in its own file system, so that many packs can be
+ * open at once. The game should be {@link #close() closed} to close the
+ * archive.
+ *
+ * @author Leia
+ */
+public class ArchiveGame implements Game, Closeable {
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the directory that contains the levels entries
+     */
+    private final Path directory;
+
+    /**
+     * the file system opened by this game (null if the file system is not
+     * owned by this game)
+     */
+    private final FileSystem fileSystem;
+
+    /**
+     * the loader used to read the levels entries
+     */
+    private final LevelLoader loader;
+
+    /**
+     * the number of the last loaded level
+     */
+    private int currentLevel;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param directory  the directory that contains the levels entries
+     * @param fileSystem the file system to close with this game (null if the
+     *                   file system is not owned by this game)
+     * @pre directory != null
+     */
+    private ArchiveGame(Path directory, FileSystem fileSystem) {
+        assert directory != null : "precondition violated";
+
+        this.directory = directory;
+        this.fileSystem = fileSystem;
+        this.loader = new LevelLoader();
+    }
+
+    /**
+     * Open the levels of a zip or jar archive
+     *
+     * @param archive   the path of the archive
+     * @param directory the directory of the levels entries in the archive
+     *                  ("/" for the root of the archive)
+     * @return the game of the levels of the archive
+     * @throws IOException if the archive cannot be opened
+     * @pre archive != null && directory != null
+     * @post ret != null
+     */
+    public static ArchiveGame open(Path archive, String directory) throws IOException {
+        assert archive != null && directory != null : "precondition violated";
+
+        FileSystem fileSystem = FileSystems.newFileSystem(archive, (ClassLoader) null);
+        return new ArchiveGame(fileSystem.getPath(directory), fileSystem);
+    }
+
+    /**
+     * Open the levels of a directory of the classpath resources. The
+     * directory may be in a jar archive or in a directory of the file system.
+     *
+     * @param classLoader the class loader of the resources
+     * @param directory   the resource name of the directory ("" for the root
+     *                    of the classpath)
+     * @return the game of the levels of the directory
+     * @throws IOException if the directory does not contain the first level,
+     *                     or if its archive cannot be opened
+     * @pre classLoader != null && directory != null
+     * @post ret != null
+     */
+    public static ArchiveGame fromClasspath(ClassLoader classLoader, String directory) throws IOException {
+        assert classLoader != null && directory != null : "precondition violated";
+
+        String name = directory.isEmpty() || directory.endsWith("/") ? directory + "level1" : directory + "/level1";
+        URL url = classLoader.getResource(name);
+        if (url == null) {
+            url = classLoader.getResource(name + BinaryLevelFormat.SUFFIX);
+        }
+        if (url == null) {
+            throw new FileNotFoundException("The resource " + name + " is not in the classpath");
+        }
+
+        URI uri;
+        try {
+            uri = url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IOException("The resource " + url + " has an invalid location", e);
+        }
+        FileSystem fileSystem = null;
+        if ("jar".equals(uri.getScheme())) {
+            try {
+                fileSystem = FileSystems.newFileSystem(uri, Collections.<String, Object>emptyMap());
+            } catch (FileSystemAlreadyExistsException e) {
+                // the jar is already open (for example by another game), it is shared
+            }
+        }
+        return new ArchiveGame(Paths.get(uri).getParent(), fileSystem);
+    }
+
+    //--------------------------------------------------------------
+    // Game overriden methods
+    //--------------------------------------------------------------
+
+    @Override
+    public Level nextLevel() {
+        assert hasNextLevel() : "precondition violated";
+
+        Level level = null;
+        currentLevel++;
+        try {
+            level = loader.load(levelPath(currentLevel));
+
+        } catch (IOException | ParseException e) {
+            System.err.println("Error while loading the level " + currentLevel + ": " + e.getMessage());
+            if (hasNextLevel()) {
+                level = new LevelImpl(new ArrayList<>(), new ArrayList<>(), new HashMap<>(), new Properties());
+            }
+        }
+
+        assert level != null : "postcondition violated";
+        return level;
+    }
+
+    @Override
+    public boolean hasNextLevel() {
+        return Files.isRegularFile(directory.resolve("level" + (currentLevel + 1)))
+                || Files.isRegularFile(directory.resolve("level" + (currentLevel + 1) + BinaryLevelFormat.SUFFIX));
+    }
+
+    //--------------------------------------------------------------
+    // Closeable overriden method
+    //--------------------------------------------------------------
+
+    /**
+     * Close the archive opened by this game. The levels already loaded are
+     * still usable.
+     *
+     * @throws IOException if the archive cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (fileSystem != null) {
+            fileSystem.close();
+        }
+    }
+
+    //--------------------------------------------------------------
+    // Levels
+    //--------------------------------------------------------------
+
+    /**
+     * Give the levels of this game, from the first one, without changing the
+     * current level. Each level is loaded when the iteration reaches it, so
+     * that the levels are not held together in memory. A level that cannot be
+     * loaded is given as an empty level, as by {@link #nextLevel()}.
+     *
+     * @return the levels, that may be iterated several times while the
+     * archive is open
+     */
+    public Iterable<Level> levels() {
+        return () -> new Iterator<Level>() {
+
+            /**
+             * the loader of the iteration, so that the loader of the game is
+             * never shared
+             */
+            private final LevelLoader levelLoader = new LevelLoader();
+
+            /**
+             * the number of the last level of the iteration
+             */
+            private int number;
+
+            @Override
+            public boolean hasNext() {
+                return Files.isRegularFile(directory.resolve("level" + (number + 1)))
+                        || Files.isRegularFile(directory.resolve("level" + (number + 1) + BinaryLevelFormat.SUFFIX));
+            }
+
+            @Override
+            public Level next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                number++;
+                try {
+                    return levelLoader.load(levelPath(number));
+                } catch (IOException | ParseException e) {
+                    System.err.println("Error while loading the level " + number + ": " + e.getMessage());
+                    return new LevelImpl(new ArrayList<>(), new ArrayList<>(), new HashMap<>(), new Properties());
+                }
+            }
+        };
+    }
+
+    //--------------------------------------------------------------
+    // toString
+    //--------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return "ArchiveGame " + directory.toUri() + " (level " + currentLevel + ")";
+    }
+
+    //--------------------------------------------------------------
+    // Private method
+    //--------------------------------------------------------------
+
+    /**
+     * Give the entry of the given level: the binary entry if it is present and
+     * up to date, else the text entry
+     *
+     * @param number the level number
+     * @return the entry to load
+     * @throws IOException if the attributes of the entries cannot be read
+     */
+    private Path levelPath(int number) throws IOException {
+        Path text = directory.resolve("level" + number);
+        Path binary = directory.resolve("level" + number + BinaryLevelFormat.SUFFIX);
+        if (Files.isRegularFile(binary) && (!Files.isRegularFile(text)
+                || Files.getLastModifiedTime(binary).compareTo(Files.getLastModifiedTime(text)) >= 0)) {
+            return binary;
+        }
+        return text;
+    }
+}
@@ -0,0 +1,436 @@
+package data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.*;
+
+/**
+ * The binary format of the levels files. A binary level file (named
+ * "levelN.bin") holds the same level as the text file "levelN" but needs no
+ * parsing: all the sections have a fixed layout and the board is stored as
+ * one {@link CellCode} per cell. All the integers are big-endian.
+ * <pre>
+ * header      magic "PACL" (int), version (short), reserved (short), board
+ *             size, fruits count, elements count, properties count, strings
+ *             pool length, reserved (int each)                      32 bytes
+ * fruits      key (char), reserved (short), value (int), name (int)  12 bytes each
+ * elements    name (int), x (int), y (int)                          12 bytes each
+ * properties  key (int), value (int)                                 8 bytes each
+ * strings     length (unsigned short) followed by the UTF-8 bytes, for each
+ *             string. The names, keys and values above are offsets in this pool
+ * board       size * size cell codes, row by row
+ * </pre>
+ *
+ * @author Leia
+ */
+public final class BinaryLevelFormat {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the suffix of the binary levels files names
+     */
+    public static final String SUFFIX = ".bin";
+
+    /**
+     * the first 4 bytes of a binary level file ("PACL")
+     */
+    public static final int MAGIC = 0x5041434C;
+
+    /**
+     * the version of the format
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * the size of the header
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * the size of a fruit record
+     */
+    private static final int FRUIT_SIZE = 12;
+
+    /**
+     * the size of an element record
+     */
+    private static final int ELEMENT_SIZE = 12;
+
+    /**
+     * the size of a property record
+     */
+    private static final int PROPERTY_SIZE = 8;
+
+    /**
+     * the name of the pacman element
+     */
+    private static final String PACMAN = "pacman";
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Private constructor: this class only contains static methods
+     */
+    private BinaryLevelFormat() {
+    }
+
+    //--------------------------------------------------------------
+    // Public methods
+    //--------------------------------------------------------------
+
+    /**
+     * Check whether the given bytes begin with the magic number of the binary
+     * format
+     *
+     * @param buffer the level description (its position is not modified)
+     * @return true if the buffer contains a binary level
+     */
+    public static boolean matches(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    /**
+     * Read a level from the bytes between the position and the limit of the
+     * given buffer. The buffer position is not modified.
+     *
+     * @param buffer the level description in the binary format
+     * @return the level
+     * @throws ParseException if the content is not a valid binary level (the
+     *                        error offset is the offset of the invalid data)
+     * @pre matches(buffer)
+     * @post ret != null
+     */
+    public static Level read(ByteBuffer buffer) throws ParseException {
+        assert matches(buffer) : "precondition violated";
+
+        ByteBuffer in = buffer.slice();
+        Sections sections = new Sections(in, in.remaining());
+
+        // the board, copied as is once the codes are checked
+        if ((long) sections.size * sections.size > Integer.MAX_VALUE) {
+            throw new ParseException("The board of size " + sections.size + " is too large to be read. It should be mapped", 8);
+        }
+        byte[] cells = new byte[sections.size * sections.size];
+        in.position((int) sections.boardOffset);
+        in.get(cells);
+        checkCodes(ByteBuffer.wrap(cells), 0, sections);
+
+        return new LevelImpl(sections.elements, sections.size, cells, sections.table, sections.properties);
+    }
+
+    /**
+     * Map the level of a binary level file. The board is not copied: it is
+     * kept in the file, mapped read-only in chunks of
+     * {@link OffHeapLevel#CHUNK_SIZE} bytes.
+     *
+     * @param channel the channel of the file (the mapping stays valid when
+     *                it is closed)
+     * @return the level
+     * @throws IOException    if the file cannot be mapped
+     * @throws ParseException if the content is not a valid binary level
+     * @pre channel != null
+     * @post ret != null
+     */
+    public static OffHeapLevel map(FileChannel channel) throws IOException, ParseException {
+        assert channel != null : "precondition violated";
+
+        long length = channel.size();
+        ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(length, Integer.MAX_VALUE));
+        if (!matches(in)) {
+            throw new ParseException("The file is not a binary level", 0);
+        }
+        Sections sections = new Sections(in, length);
+
+        long cellCount = (long) sections.size * sections.size;
+        ByteBuffer[] chunks = new ByteBuffer[OffHeapLevel.chunkCount(sections.size)];
+        for (int i = 0; i < chunks.length; i++) {
+            long first = i * OffHeapLevel.CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, sections.boardOffset + first,
+                    Math.min(OffHeapLevel.CHUNK_SIZE, cellCount - first));
+            checkCodes(chunks[i], first, sections);
+        }
+
+        return new OffHeapLevel(sections.elements, sections.size, chunks, true, sections.table, sections.properties);
+    }
+
+    /**
+     * Write the given level in the binary format
+     *
+     * @param level the level to write
+     * @param out   the output stream (not closed by this method)
+     * @throws IOException if an error occurs while writing
+     * @pre level != null && out != null
+     * @pre level.getFruitCount() <= CellCode.MAX_FRUITS
+     */
+    public static void write(Level level, OutputStream out) throws IOException {
+        assert level != null && out != null : "precondition violated";
+        assert level.getFruitCount() <= CellCode.MAX_FRUITS : "precondition violated";
+
+        int size = level.getSize();
+        StringPool pool = new StringPool();
+
+        // the records referencing the strings pool
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(records);
+        for (int i = 0; i < level.getFruitCount(); i++) {
+            Fruit fruit = level.getFruitByIndex(i);
+            data.writeChar(fruit.getKey());
+            data.writeShort(0);
+            data.writeInt(fruit.getValue());
+            data.writeInt(pool.add(fruit.getName()));
+        }
+        int elementCount = 0;
+        for (Element element : level.getElements()) {
+            String name = element instanceof Ghost ? ((Ghost) element).getName() : PACMAN;
+            data.writeInt(pool.add(name));
+            data.writeInt(element.getX());
+            data.writeInt(element.getY());
+            elementCount++;
+        }
+        Properties properties = level.getProperties();
+        Set<String> names = new TreeSet<>(properties.stringPropertyNames());
+        for (String name : names) {
+            data.writeInt(pool.add(name));
+            data.writeInt(pool.add(properties.getProperty(name)));
+        }
+        data.flush();
+
+        DataOutputStream output = new DataOutputStream(out);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeShort(0);
+        output.writeInt(size);
+        output.writeInt(level.getFruitCount());
+        output.writeInt(elementCount);
+        output.writeInt(names.size());
+        output.writeInt(pool.bytes.size());
+        output.writeInt(0);
+        records.writeTo(output);
+        pool.bytes.writeTo(output);
+
+        // the board, row by row so that a large board is never held in memory
+        byte[] row = new byte[size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int fruit = level.getFruitIndex(x, y);
+                row[x] = level.isWall(x, y) ? CellCode.WALL : fruit < 0 ? CellCode.EMPTY : CellCode.ofFruit(fruit);
+            }
+            output.write(row);
+        }
+        output.flush();
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Check the codes of a part of the board
+     *
+     * @param codes    the codes, from the position 0 to the limit
+     * @param first    the index of the first cell of the part
+     * @param sections the sections of the level
+     * @throws ParseException if a code is neither a wall, an empty cell nor
+     *                        a fruit of the fruits table
+     */
+    private static void checkCodes(ByteBuffer codes, long first, Sections sections) throws ParseException {
+        int fruitCount = sections.table.length;
+        for (int i = 0; i < codes.limit(); i++) {
+            byte code = codes.get(i);
+            if (code != CellCode.WALL && code != CellCode.EMPTY && CellCode.fruitIndex(code) >= fruitCount) {
+                long cell = first + i;
+                long offset = sections.boardOffset + cell;
+                throw new ParseException("The cell (" + cell % sections.size + "," + cell / sections.size + ") has an invalid code: " + (code & 0xFF),
+                        (int) Math.min(offset, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    /**
+     * Decode a string of the strings pool
+     *
+     * @param strings     the strings pool
+     * @param offset      the offset of the string in the pool
+     * @param poolOffset  the offset of the pool in the file (for the error
+     *                    message)
+     * @return the decoded string
+     * @throws ParseException if the offset is not valid
+     */
+    private static String string(byte[] strings, int offset, int poolOffset) throws ParseException {
+        if (offset < 0 || offset + 2 > strings.length) {
+            throw new ParseException("The string offset " + offset + " is out of the strings pool", poolOffset);
+        }
+        int length = ((strings[offset] & 0xFF) << 8) | (strings[offset + 1] & 0xFF);
+        if (offset + 2 + length > strings.length) {
+            throw new ParseException("The string at offset " + offset + " is truncated", poolOffset + offset);
+        }
+        return new String(strings, offset + 2, length, StandardCharsets.UTF_8);
+    }
+
+    //--------------------------------------------------------------
+    // Inner classes
+    //--------------------------------------------------------------
+
+    /**
+     * The sections of a binary level that precede the board, once parsed
+     */
+    private static class Sections {
+
+        /**
+         * the number of rows/columns of the board
+         */
+        private final int size;
+
+        /**
+         * the offset of the board in the file
+         */
+        private final long boardOffset;
+
+        /**
+         * the fruits table
+         */
+        private final Fruit[] table;
+
+        /**
+         * the elements, in the file order
+         */
+        private final Collection<Element> elements;
+
+        /**
+         * the properties
+         */
+        private final Properties properties;
+
+        /**
+         * Parse the sections of a binary level
+         *
+         * @param in     the beginning of the file, at least up to the board
+         * @param length the length of the file
+         * @throws ParseException if the content is not a valid binary level (the
+         *                        error offset is the offset of the invalid data)
+         */
+        Sections(ByteBuffer in, long length) throws ParseException {
+            if (in.limit() < HEADER_SIZE) {
+                throw new ParseException("The header is truncated", in.limit());
+            }
+            short version = in.getShort(4);
+            if (version != VERSION) {
+                throw new ParseException("The version " + version + " is not supported. Should be " + VERSION, 4);
+            }
+            int size = in.getInt(8);
+            int fruitCount = in.getInt(12);
+            int elementCount = in.getInt(16);
+            int propertyCount = in.getInt(20);
+            int stringsLength = in.getInt(24);
+            if (size < 0 || fruitCount < 0 || fruitCount > CellCode.MAX_FRUITS || elementCount < 0 || propertyCount < 0 || stringsLength < 0) {
+                throw new ParseException("The header contains an invalid count", 8);
+            }
+
+            // the offsets of the sections
+            long fruitsOffset = HEADER_SIZE;
+            long elementsOffset = fruitsOffset + (long) fruitCount * FRUIT_SIZE;
+            long propertiesOffset = elementsOffset + (long) elementCount * ELEMENT_SIZE;
+            long stringsOffset = propertiesOffset + (long) propertyCount * PROPERTY_SIZE;
+            long boardOffset = stringsOffset + stringsLength;
+            if (boardOffset + (long) size * size != length || boardOffset > in.limit()) {
+                throw new ParseException("The file contains " + length + " bytes. Should be " + (boardOffset + (long) size * size),
+                        (int) Math.min(length, Integer.MAX_VALUE));
+            }
+
+            byte[] strings = new byte[stringsLength];
+            ByteBuffer pool = in.duplicate();
+            pool.position((int) stringsOffset);
+            pool.get(strings);
+
+            // the fruits table
+            Fruit[] table = new Fruit[fruitCount];
+            for (int i = 0; i < fruitCount; i++) {
+                int offset = (int) fruitsOffset + i * FRUIT_SIZE;
+                char key = in.getChar(offset);
+                int value = in.getInt(offset + 4);
+                String name = string(strings, in.getInt(offset + 8), (int) stringsOffset);
+                if (name.isEmpty() || value <= 0) {
+                    throw new ParseException("The fruit " + key + " has an empty name or an invalid value", offset);
+                }
+                table[i] = Interning.fruit(key, name, value);
+            }
+
+            // the elements
+            Collection<Element> elements = new ArrayList<>();
+            for (int i = 0; i < elementCount; i++) {
+                int offset = (int) elementsOffset + i * ELEMENT_SIZE;
+                String name = string(strings, in.getInt(offset), (int) stringsOffset);
+                int x = in.getInt(offset + 4);
+                int y = in.getInt(offset + 8);
+                if (name.isEmpty() || x < 0 || y < 0) {
+                    throw new ParseException("The element " + name + " has an empty name or an invalid location", offset);
+                }
+                elements.add(PACMAN.equals(name) ? new PacmanImpl(x, y) : new GhostImpl(x, y, Interning.name(name)));
+            }
+
+            // the properties
+            Properties properties = new Properties();
+            for (int i = 0; i < propertyCount; i++) {
+                int offset = (int) propertiesOffset + i * PROPERTY_SIZE;
+                properties.put(string(strings, in.getInt(offset), (int) stringsOffset),
+                        string(strings, in.getInt(offset + 4), (int) stringsOffset));
+            }
+
+            this.size = size;
+            this.boardOffset = boardOffset;
+            this.table = table;
+            this.elements = elements;
+            this.properties = properties;
+        }
+    }
+
+    /**
+     * The strings pool being written. Each string is written once.
+     */
+    private static class StringPool {
+
+        /**
+         * the content of the pool
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * the offsets of the strings already in the pool
+         */
+        private final Map<String, Integer> offsets = new HashMap<>();
+
+        /**
+         * Add a string to the pool
+         *
+         * @param value the string
+         * @return the offset of the string in the pool
+         * @throws IOException if the string is too long
+         */
+        int add(String value) throws IOException {
+            Integer offset = offsets.get(value);
+            if (offset == null) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                if (encoded.length > 0xFFFF) {
+                    throw new IOException("The string \"" + value + "\" is too long");
+                }
+                offset = bytes.size();
+                bytes.write(encoded.length >>> 8);
+                bytes.write(encoded.length);
+                bytes.write(encoded, 0, encoded.length);
+                offsets.put(value, offset);
+            }
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package data;
+
+import java.util.*;
+
+/**
+ * A builder of the board of a level, filled cell by cell while the board is
+ * read. The cells are stored directly as codes: a flat array for the usual
+ * boards, or {@link TiledLevel tiles} for the boards larger than
+ * TILED_THRESHOLD. Since the fruits are only known after the board, the keys
+ * are first given temporary codes (in the order of their first appearance)
+ * which are translated into the fruits indexes when the level is built. A
+ * board has at most CellCode.MAX_FRUITS different keys besides the walls,
+ * the number of fruits that the codes can reference.
+ *
+ * @author Leia
+ */
+class BoardBuilder {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the size above which the board is stored in tiles
+     */
+    static final int TILED_THRESHOLD = 1024;
+
+    /**
+     * the key of the walls
+     */
+    private static final char WALL = 'w';
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the number of rows/columns of the board
+     */
+    private final int size;
+
+    /**
+     * the cells codes, row by row (null if the board is stored in tiles)
+     */
+    private final byte[] cells;
+
+    /**
+     * the tiles (null if the board is stored in a flat array)
+     */
+    private final byte[][] tiles;
+
+    /**
+     * the number of tiles in a row of tiles
+     */
+    private final int tilesPerRow;
+
+    /**
+     * the temporary code of each ASCII key (CellCode.EMPTY if the key has not
+     * been met yet)
+     */
+    private final byte[] asciiCodes;
+
+    /**
+     * the temporary code of the other keys
+     */
+    private final Map<Character, Byte> otherCodes;
+
+    /**
+     * the key of each temporary code
+     */
+    private final char[] keys;
+
+    /**
+     * the number of temporary codes
+     */
+    private int keyCount;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param size the number of rows/columns of the board
+     * @pre size >= 0
+     */
+    BoardBuilder(int size) {
+        assert size >= 0 : "precondition violated";
+
+        this.size = size;
+        this.tilesPerRow = TiledLevel.tileCount(size);
+        if (size > TILED_THRESHOLD) {
+            this.cells = null;
+            this.tiles = new byte[tilesPerRow * tilesPerRow][];
+            for (int i = 0; i < tiles.length; i++) {
+                tiles[i] = new byte[TiledLevel.TILE_SIZE * TiledLevel.TILE_SIZE];
+                if ((i + 1) % tilesPerRow == 0 || i >= tilesPerRow * (tilesPerRow - 1)) {
+                    // the last tiles of a row or column cover cells beyond the board
+                    Arrays.fill(tiles[i], CellCode.WALL);
+                }
+            }
+        } else {
+            this.cells = new byte[size * size];
+            this.tiles = null;
+        }
+        this.asciiCodes = new byte[128];
+        Arrays.fill(asciiCodes, CellCode.EMPTY);
+        this.otherCodes = new HashMap<>();
+        this.keys = new char[CellCode.MAX_FRUITS];
+    }
+
+    //--------------------------------------------------------------
+    // Getter
+    //--------------------------------------------------------------
+
+    /**
+     * Give the number of rows/columns of the board
+     *
+     * @return the board size
+     */
+    int size() {
+        return size;
+    }
+
+    //--------------------------------------------------------------
+    // Setter
+    //--------------------------------------------------------------
+
+    /**
+     * Set the key of the cell at the given location
+     *
+     * @param x   the cell column index
+     * @param y   the cell line index
+     * @param key the key of the cell (w for a wall, else a fruit key)
+     * @return false if the key is a new key and the board already contains
+     * CellCode.MAX_FRUITS different keys (the cell is not set)
+     * @pre x >= 0 && x < size && y >= 0 && y < size
+     */
+    boolean set(int x, int y, char key) {
+        byte code;
+        if (key == WALL) {
+            code = CellCode.WALL;
+        } else if (key < asciiCodes.length) {
+            code = asciiCodes[key];
+            if (code == CellCode.EMPTY) {
+                if (keyCount == keys.length) {
+                    return false;
+                }
+                code = asciiCodes[key] = newCode(key);
+            }
+        } else {
+            Byte known = otherCodes.get(key);
+            if (known == null) {
+                if (keyCount == keys.length) {
+                    return false;
+                }
+                known = newCode(key);
+                otherCodes.put(key, known);
+            }
+            code = known;
+        }
+
+        if (cells != null) {
+            cells[y * size + x] = code;
+        } else {
+            tiles[(y >>> TiledLevel.TILE_SHIFT) * tilesPerRow + (x >>> TiledLevel.TILE_SHIFT)]
+                    [((y & (TiledLevel.TILE_SIZE - 1)) << TiledLevel.TILE_SHIFT) | (x & (TiledLevel.TILE_SIZE - 1))] = code;
+        }
+        return true;
+    }
+
+    //--------------------------------------------------------------
+    // Public method
+    //--------------------------------------------------------------
+
+    /**
+     * Build the level. The temporary codes are translated into the indexes of
+     * the fruits in the fruits table, the builder should not be used
+     * afterwards.
+     *
+     * @param elements   the elements of the level
+     * @param fruits     the fruits map (key,fruit), its iteration order gives
+     *                   the order of the fruits table
+     * @param properties the level properties
+     * @return the level
+     * @pre elements != null && fruits != null && properties != null
+     * @pre fruits.size() <= CellCode.MAX_FRUITS
+     * @post ret != null
+     */
+    Level build(Collection<Element> elements, Map<Character, Fruit> fruits, Properties properties) {
+        assert elements != null && fruits != null && properties != null : "precondition violated";
+        assert fruits.size() <= CellCode.MAX_FRUITS : "precondition violated";
+
+        // the translation of the temporary codes
+        Fruit[] table = fruits.values().toArray(new Fruit[0]);
+        Map<Character, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < table.length; i++) {
+            indexes.put(table[i].getKey(), i);
+        }
+        byte[] translation = new byte[256];
+        for (int code = 0; code < translation.length; code++) {
+            translation[code] = (byte) code; // WALL and EMPTY are kept
+        }
+        for (int code = 0; code < keyCount; code++) {
+            Integer index = indexes.get(keys[code]);
+            translation[code] = index != null ? CellCode.ofFruit(index) : CellCode.EMPTY;
+        }
+
+        if (cells != null) {
+            translate(cells, translation);
+            return new LevelImpl(elements, size, cells, table, properties);
+        }
+
+        // the tiles whose cells have a single code share the same array
+        byte[][] uniform = new byte[256][];
+        for (int i = 0; i < tiles.length; i++) {
+            byte[] tile = tiles[i];
+            translate(tile, translation);
+            if (isUniform(tile)) {
+                int code = tile[0] & 0xFF;
+                if (uniform[code] == null) {
+                    uniform[code] = tile;
+                }
+                tiles[i] = uniform[code];
+            }
+        }
+        return new TiledLevel(elements, size, tiles, table, properties);
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Give a new temporary code to a key
+     *
+     * @param key the key
+     * @return the temporary code
+     * @pre keyCount < keys.length
+     */
+    private byte newCode(char key) {
+        keys[keyCount] = key;
+        return (byte) keyCount++;
+    }
+
+    /**
+     * Translate the codes of the given cells
+     *
+     * @param codes       the cells codes
+     * @param translation the new code of each code
+     */
+    private static void translate(byte[] codes, byte[] translation) {
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = translation[codes[i] & 0xFF];
+        }
+    }
+
+    /**
+     * Check whether all the given codes are equal
+     *
+     * @param codes the cells codes
+     * @return true if the codes are all equal
+     */
+    private static boolean isUniform(byte[] codes) {
+        for (int i = 1; i < codes.length; i++) {
+            if (codes[i] != codes[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package data;
+
+/**
+ * The codes used to store the content of a board cell in a single byte: a
+ * wall, an empty cell (no wall and no fruit) or the index of a fruit in the
+ * fruits table of the level.
+ *
+ * @author Leia
+ */
+public final class CellCode {
+
+    /**
+     * the code of a wall
+     */
+    public static final byte WALL = (byte) 0xFF;
+
+    /**
+     * the code of a cell that is neither a wall nor a fruit
+     */
+    public static final byte EMPTY = (byte) 0xFE;
+
+    /**
+     * the maximum number of fruits that can be referenced by a code
+     */
+    public static final int MAX_FRUITS = 0xFE;
+
+    /**
+     * Private constructor: this class only contains static members
+     */
+    private CellCode() {
+    }
+
+    /**
+     * Make the code of a fruit
+     *
+     * @param index the index of the fruit in the fruits table
+     * @return the code of the fruit
+     * @pre index >= 0 && index < MAX_FRUITS
+     */
+    public static byte ofFruit(int index) {
+        assert index >= 0 && index < MAX_FRUITS : "precondition violated";
+
+        return (byte) index;
+    }
+
+    /**
+     * Check whether the given code is the code of a fruit
+     *
+     * @param code the cell code
+     * @return true if the code references a fruit
+     */
+    public static boolean isFruit(byte code) {
+        return (code & 0xFF) < MAX_FRUITS;
+    }
+
+    /**
+     * Give the index of the fruit referenced by the given code
+     *
+     * @param code the cell code
+     * @return the index of the fruit in the fruits table, -1 if the code is
+     * not the code of a fruit
+     */
+    public static int fruitIndex(byte code) {
+        return isFruit(code) ? code & 0xFF : -1;
+    }
+
+    /**
+     * Give the code of a cell of a level
+     *
+     * @param level the level
+     * @param x     the cell column index
+     * @param y     the cell line index
+     * @return the code of the cell
+     * @pre level != null && x >= 0 && x < level.getSize() && y >= 0 && y < level.getSize()
+     */
+    public static byte of(Level level, int x, int y) {
+        if (level instanceof APackedLevel) {
+            return ((APackedLevel) level).getCode(x, y);
+        }
+        if (level.isWall(x, y)) {
+            return WALL;
+        }
+        int fruit = level.getFruitIndex(x, y);
+        return fruit < 0 ? EMPTY : ofFruit(fruit);
+    }
+}
@@ -0,0 +1,288 @@
+package data;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * A 128 bits fingerprint of the content of a level: its board, its elements,
+ * its fruits and its properties. Two levels that have the same content have
+ * the same hash, whatever their files, formats or implementations, so the
+ * hash identifies a level for the caches, the replays and the remote
+ * simulations without comparing the boards.
+ * <p>
+ * The content is streamed once as 64 bits words in two mixed lanes: the
+ * board row by row, 8 cells per word, then the elements in the order of the
+ * {@link ElementTable}, the fruits in the order of their keys and the
+ * properties in the order of their names. A fruit cell is hashed by the rank
+ * of the key of its fruit, not by its index in the fruits table, so that the
+ * order of the fruits in a file does not change the hash. The hash is not
+ * cryptographic: it detects the accidental differences, not the forged ones.
+ *
+ * @author Leia
+ */
+public final class ContentHash {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the multiplier of the first lane
+     */
+    private static final long C1 = 0x87C37B91114253D5L;
+
+    /**
+     * the multiplier of the second lane
+     */
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the 64 high bits of the hash
+     */
+    private final long high;
+
+    /**
+     * the 64 low bits of the hash
+     */
+    private final long low;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param high the 64 high bits of the hash
+     * @param low  the 64 low bits of the hash
+     */
+    public ContentHash(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Compute the hash of a level
+     *
+     * @param level the level
+     * @return the hash of its content
+     * @pre level != null
+     * @post ret != null
+     */
+    public static ContentHash of(Level level) {
+        assert level != null : "precondition violated";
+
+        Hasher hasher = new Hasher();
+
+        // the fruits indexes in the order of the keys, and the rank of each index
+        Integer[] sorted = new Integer[level.getFruitCount()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, Comparator.comparing((Integer i) -> level.getFruitByIndex(i).getKey())
+                .thenComparing(i -> level.getFruitByIndex(i).getName())
+                .thenComparingInt(i -> level.getFruitByIndex(i).getValue()));
+        byte[] ranks = new byte[sorted.length];
+        for (int rank = 0; rank < sorted.length; rank++) {
+            ranks[sorted[rank]] = CellCode.ofFruit(rank);
+        }
+
+        // the board, 8 cells per word
+        int size = level.getSize();
+        hasher.add(size);
+        for (int y = 0; y < size; y++) {
+            long word = 0;
+            for (int x = 0; x < size; x++) {
+                byte code = CellCode.of(level, x, y);
+                if (CellCode.isFruit(code)) {
+                    code = ranks[CellCode.fruitIndex(code)];
+                }
+                word |= (code & 0xFFL) << ((x & 7) << 3);
+                if ((x & 7) == 7) {
+                    hasher.add(word);
+                    word = 0;
+                }
+            }
+            if ((size & 7) != 0) {
+                hasher.add(word);
+            }
+        }
+
+        // the elements
+        ElementTable elements = level.getElementTable();
+        hasher.add(elements.hasPacman() ? ((long) elements.getPacmanX() << 32 | elements.getPacmanY() & 0xFFFFFFFFL) : -1);
+        hasher.add(elements.getGhostCount());
+        for (int i = 0; i < elements.getGhostCount(); i++) {
+            hasher.add((long) elements.getGhostX(i) << 32 | elements.getGhostY(i) & 0xFFFFFFFFL);
+            hasher.add(elements.getGhostName(i));
+        }
+
+        // the fruits
+        hasher.add(level.getFruitCount());
+        for (int index : sorted) {
+            Fruit fruit = level.getFruitByIndex(index);
+            hasher.add((long) fruit.getKey() << 32 | fruit.getValue() & 0xFFFFFFFFL);
+            hasher.add(fruit.getName());
+        }
+
+        // the properties
+        TreeSet<String> names = new TreeSet<>(level.getProperties().stringPropertyNames());
+        hasher.add(names.size());
+        for (String name : names) {
+            hasher.add(name);
+            hasher.add(level.getProperties().getProperty(name));
+        }
+
+        return hasher.finish();
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the 64 high bits of the hash
+     *
+     * @return the high bits
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * Give the 64 low bits of the hash, a 64 bits hash of the level
+     *
+     * @return the low bits
+     */
+    public long getLow() {
+        return low;
+    }
+
+    //--------------------------------------------------------------
+    // Object overriden methods
+    //--------------------------------------------------------------
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContentHash)) {
+            return false;
+        }
+        ContentHash other = (ContentHash) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) low;
+    }
+
+    /**
+     * Give the hash in hexadecimal
+     *
+     * @return the 32 hexadecimal digits of the hash
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    //--------------------------------------------------------------
+    // Inner class
+    //--------------------------------------------------------------
+
+    /**
+     * The state of a hash being computed
+     */
+    private static class Hasher {
+
+        /**
+         * the first lane
+         */
+        private long h1;
+
+        /**
+         * the second lane
+         */
+        private long h2;
+
+        /**
+         * the number of words added
+         */
+        private long count;
+
+        /**
+         * Add a word
+         *
+         * @param word the word
+         */
+        void add(long word) {
+            h1 ^= Long.rotateLeft(word * C1, 31) * C2;
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52DCE729;
+            h2 ^= Long.rotateLeft(word * C2, 33) * C1;
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495AB5;
+            count++;
+        }
+
+        /**
+         * Add a string: its length, then its characters, 4 per word
+         *
+         * @param value the string
+         */
+        void add(String value) {
+            add(value.length());
+            long word = 0;
+            for (int i = 0; i < value.length(); i++) {
+                word |= (long) value.charAt(i) << ((i & 3) << 4);
+                if ((i & 3) == 3) {
+                    add(word);
+                    word = 0;
+                }
+            }
+            if ((value.length() & 3) != 0) {
+                add(word);
+            }
+        }
+
+        /**
+         * Finish the hash
+         *
+         * @return the hash of the added words
+         */
+        ContentHash finish() {
+            long a = h1 ^ count;
+            long b = h2 ^ count;
+            a += b;
+            b += a;
+            a = mix(a);
+            b = mix(b);
+            a += b;
+            b += a;
+            return new ContentHash(a, b);
+        }
+
+        /**
+         * Mix the bits of a lane
+         *
+         * @param h the lane
+         * @return the mixed lane
+         */
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
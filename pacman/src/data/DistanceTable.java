@@ -0,0 +1,471 @@
+package data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The distances (in moves) between the cells of a board, computed by breadth
+ * first searches on its {@link NavigationGraph}:
+ * <ul>
+ * <li>for the boards that have at most MAX_EXACT_CELLS open cells, the exact
+ * distances between all the pairs of open cells, in a matrix of shorts. The
+ * searches from the source cells are run in parallel, and the matrix is
+ * saved in a cache file named after the hash of the board, in the directory
+ * given by the system property "pacman.cache.dir" (by default a directory of
+ * the temporary directory), so that it is computed once per board. The file
+ * holds the walls of the board, so that a board is never given the distances
+ * of another board that has the same hash.</li>
+ * <li>for the larger boards, the distances to a few landmark cells, that give
+ * a lower bound of the distances (the triangle inequality). The landmarks
+ * distances of a board are at most LANDMARK_BUDGET ints: the boards of more
+ * than LANDMARK_BUDGET / LANDMARKS cells have fewer landmarks, and the
+ * largest ones a single landmark, so that their bound stays informative.</li>
+ * </ul>
+ * A table is immutable.
+ *
+ * @author Leia
+ */
+public final class DistanceTable {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the maximum number of open cells of a board for the exact distances
+     */
+    public static final int MAX_EXACT_CELLS = 2048;
+
+    /**
+     * the maximum number of landmarks of the large boards
+     */
+    public static final int LANDMARKS = 8;
+
+    /**
+     * the number of landmarks distances (ints) of a board above which it has
+     * fewer landmarks (but at least one)
+     */
+    public static final int LANDMARK_BUDGET = LANDMARKS << 22;
+
+    /**
+     * the distance of the cells that cannot be reached
+     */
+    public static final int UNREACHABLE = -1;
+
+    /**
+     * the magic number of the cache files, "PACD"
+     */
+    private static final int MAGIC = 0x50414344;
+
+    /**
+     * the version of the cache files format
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * the size of the header of the cache files (followed by the walls, then
+     * by the distances)
+     */
+    private static final int HEADER_SIZE = 24;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the navigation graph of the board
+     */
+    private final NavigationGraph graph;
+
+    /**
+     * the number of rows/columns of the board
+     */
+    private final int size;
+
+    /**
+     * the index of each cell among the open cells (-1 for a wall), null for
+     * the landmarks distances
+     */
+    private final int[] openIndexes;
+
+    /**
+     * the number of open cells
+     */
+    private final int openCount;
+
+    /**
+     * the exact distances, openCount x openCount (null for the landmarks
+     * distances)
+     */
+    private final short[] distances;
+
+    /**
+     * the distances from each landmark to each cell, UNREACHABLE for the
+     * unreachable cells (null for the exact distances)
+     */
+    private final int[][] landmarks;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param graph       the navigation graph of the board
+     * @param openIndexes the index of each cell among the open cells
+     * @param openCount   the number of open cells
+     * @param distances   the exact distances (null for the landmarks
+     *                    distances)
+     * @param landmarks   the landmarks distances (null for the exact
+     *                    distances)
+     */
+    private DistanceTable(NavigationGraph graph, int[] openIndexes, int openCount, short[] distances, int[][] landmarks) {
+        this.graph = graph;
+        this.size = graph.getSize();
+        this.openIndexes = openIndexes;
+        this.openCount = openCount;
+        this.distances = distances;
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Give the distance table of the board of the given graph: read from the
+     * cache file if present, else computed (see
+     * {@link NavigationGraph#getDistanceTable()}, which keeps the table)
+     *
+     * @param graph the navigation graph of the board
+     * @return the distance table
+     * @pre graph != null
+     * @post ret != null
+     */
+    static DistanceTable of(NavigationGraph graph) {
+        assert graph != null : "precondition violated";
+
+        int cells = graph.getSize() * graph.getSize(); // the graph size is checked by NavigationGraph.of
+        int openCount = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (isOpen(graph, cell)) {
+                openCount++;
+            }
+        }
+        if (openCount > MAX_EXACT_CELLS) {
+            return new DistanceTable(graph, null, openCount, null, landmarks(graph, Math.max(1, Math.min(LANDMARKS, LANDMARK_BUDGET / cells))));
+        }
+
+        int[] openIndexes = new int[cells];
+        int openIndex = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            openIndexes[cell] = isOpen(graph, cell) ? openIndex++ : -1;
+        }
+
+        File file = cacheFile(graph);
+        short[] distances = read(file, graph, openCount);
+        if (distances == null) {
+            distances = exact(graph, openIndexes, openCount);
+            write(file, graph, openCount, distances);
+        }
+        return new DistanceTable(graph, openIndexes, openCount, distances, null);
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Check whether the distances are exact
+     *
+     * @return true if the distances are exact, false if they are lower bounds
+     * (for the large boards)
+     */
+    public boolean isExact() {
+        return distances != null;
+    }
+
+    /**
+     * Give the number of open cells of the board
+     *
+     * @return the number of open cells
+     */
+    public int getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * Give the distance between two cells
+     *
+     * @param fromX the column index of the first cell
+     * @param fromY the line index of the first cell
+     * @param toX   the column index of the second cell
+     * @param toY   the line index of the second cell
+     * @return the number of moves of the shortest path (a lower bound of it if
+     * the table is not exact), UNREACHABLE if
+     * a cell is a wall or if the second cell cannot be reached from the first
+     * (as far as the landmarks tell)
+     * @pre fromX, fromY, toX and toY are in [0, size[
+     */
+    public int getDistance(int fromX, int fromY, int toX, int toY) {
+        assert fromX >= 0 && fromX < size && fromY >= 0 && fromY < size
+                && toX >= 0 && toX < size && toY >= 0 && toY < size : "precondition violated";
+
+        int from = fromY * size + fromX;
+        int to = toY * size + toX;
+        if (distances != null) {
+            int i = openIndexes[from];
+            int j = openIndexes[to];
+            return i < 0 || j < 0 ? UNREACHABLE : distances[i * openCount + j];
+        }
+
+        if (!isOpen(graph, from) || !isOpen(graph, to)) {
+            return UNREACHABLE;
+        }
+        int bound = 0;
+        for (int[] landmark : landmarks) {
+            int a = landmark[from];
+            int b = landmark[to];
+            if ((a == UNREACHABLE) != (b == UNREACHABLE)) {
+                return UNREACHABLE; // only one of them is connected to the landmark
+            }
+            if (a != UNREACHABLE) {
+                bound = Math.max(bound, Math.abs(a - b));
+            }
+        }
+        return bound;
+    }
+
+    //--------------------------------------------------------------
+    // Package method
+    //--------------------------------------------------------------
+
+    /**
+     * Estimate the memory used by this table
+     *
+     * @return the estimated weight (in bytes)
+     */
+    long weight() {
+        long weight = 64;
+        if (distances != null) {
+            weight += distances.length * 2L + openIndexes.length * 4L;
+        }
+        if (landmarks != null) {
+            weight += (long) landmarks.length * landmarks[0].length * 4;
+        }
+        return weight;
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Check whether a cell is open
+     *
+     * @param graph the navigation graph of the board
+     * @param cell  the cell (y * size + x)
+     * @return true if the cell is open (an open cell without moves is walled in)
+     */
+    private static boolean isOpen(NavigationGraph graph, int cell) {
+        return graph.moves(cell) != 0 || graph.getNode(cell % graph.getSize(), cell / graph.getSize()) >= 0;
+    }
+
+    /**
+     * Compute the exact distances, with a breadth first search from each open
+     * cell, in parallel
+     *
+     * @param graph       the navigation graph of the board
+     * @param openIndexes the index of each cell among the open cells
+     * @param openCount   the number of open cells
+     * @return the distances, openCount x openCount
+     */
+    private static short[] exact(NavigationGraph graph, int[] openIndexes, int openCount) {
+        int[] openCells = new int[openCount];
+        for (int cell = 0; cell < openIndexes.length; cell++) {
+            if (openIndexes[cell] >= 0) {
+                openCells[openIndexes[cell]] = cell;
+            }
+        }
+
+        short[] distances = new short[openCount * openCount];
+        Arrays.fill(distances, (short) UNREACHABLE);
+        IntStream.range(0, openCount).parallel().forEach(source -> {
+            // each search writes only the row of its source
+            int row = source * openCount;
+            int[] queue = new int[openCount];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = openCells[source];
+            distances[row + source] = 0;
+            while (head < tail) {
+                int cell = queue[head++];
+                short next = (short) (distances[row + openIndexes[cell]] + 1);
+                int moves = graph.moves(cell);
+                for (int direction = NavigationGraph.UP; direction <= NavigationGraph.LEFT; direction <<= 1) {
+                    if ((moves & direction) != 0) {
+                        int neighbour = cell + NavigationGraph.dx(direction) + NavigationGraph.dy(direction) * graph.getSize();
+                        int index = row + openIndexes[neighbour];
+                        if (distances[index] == UNREACHABLE) {
+                            distances[index] = next;
+                            queue[tail++] = neighbour;
+                        }
+                    }
+                }
+            }
+        });
+        return distances;
+    }
+
+    /**
+     * Compute the distances to the landmarks. The landmarks are chosen one
+     * after the other as far as possible from the previous ones.
+     *
+     * @param graph the navigation graph of the board
+     * @param count the number of landmarks
+     * @return the landmarks distances
+     * @pre count > 0
+     */
+    private static int[][] landmarks(NavigationGraph graph, int count) {
+        int cells = graph.getSize() * graph.getSize();
+        int[][] landmarks = new int[count][cells];
+        int[] queue = new int[cells];
+        int[] nearest = count > 1 ? new int[cells] : null; // the distance to the nearest landmark
+        if (nearest != null) {
+            Arrays.fill(nearest, Integer.MAX_VALUE);
+        }
+
+        int landmark = 0;
+        while (landmark < cells && graph.moves(landmark) == 0) {
+            landmark++;
+        }
+        for (int[] distances : landmarks) {
+            Arrays.fill(distances, UNREACHABLE);
+            int farthest = landmark;
+            if (landmark < cells) {
+                int head = 0;
+                int tail = 0;
+                queue[tail++] = landmark;
+                distances[landmark] = 0;
+                while (head < tail) {
+                    int cell = queue[head++];
+                    int distance = distances[cell] + 1;
+                    int moves = graph.moves(cell);
+                    for (int direction = NavigationGraph.UP; direction <= NavigationGraph.LEFT; direction <<= 1) {
+                        if ((moves & direction) != 0) {
+                            int neighbour = cell + NavigationGraph.dx(direction) + NavigationGraph.dy(direction) * graph.getSize();
+                            if (distances[neighbour] == UNREACHABLE) {
+                                distances[neighbour] = distance;
+                                queue[tail++] = neighbour;
+                            }
+                        }
+                    }
+                }
+                if (nearest != null) {
+                    farthest = -1;
+                    for (int i = 0; i < tail; i++) {
+                        int cell = queue[i];
+                        nearest[cell] = Math.min(nearest[cell], distances[cell]);
+                        if (farthest < 0 || nearest[cell] > nearest[farthest]) {
+                            farthest = cell;
+                        }
+                    }
+                }
+            }
+            landmark = farthest;
+        }
+        return landmarks;
+    }
+
+    /**
+     * Give the cache file of the distances of a board
+     *
+     * @param graph the navigation graph of the board
+     * @return the cache file
+     */
+    private static File cacheFile(NavigationGraph graph) {
+        String directory = System.getProperty("pacman.cache.dir",
+                new File(System.getProperty("java.io.tmpdir"), "pacman-cache").getPath());
+        return new File(directory, String.format("%016x.dist", graph.getHash()));
+    }
+
+    /**
+     * Read the distances from a cache file
+     *
+     * @param file      the cache file
+     * @param graph     the navigation graph of the board
+     * @param openCount the number of open cells
+     * @return the distances, null if the file is absent or does not match the
+     * board (its hash, size, open cells or walls)
+     */
+    private static short[] read(File file, NavigationGraph graph, int openCount) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int wallWords = graph.getWallWordCount();
+            long expected = HEADER_SIZE + 8L * wallWords + 2L * openCount * openCount;
+            if (channel.size() != expected) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != graph.getHash()
+                    || buffer.getInt(16) != graph.getSize() || buffer.getInt(20) != openCount) {
+                return null;
+            }
+            for (int i = 0; i < wallWords; i++) {
+                if (buffer.getLong(HEADER_SIZE + 8 * i) != graph.getWallWord(i)) {
+                    return null; // another board with the same hash
+                }
+            }
+            short[] distances = new short[openCount * openCount];
+            buffer.position(HEADER_SIZE + 8 * wallWords);
+            buffer.asShortBuffer().get(distances);
+            return distances;
+        } catch (IOException e) {
+            return null; // the distances are computed again
+        }
+    }
+
+    /**
+     * Write the distances in a cache file. The file is written under a
+     * temporary name then renamed, so that a partial file is never read; the
+     * temporary file is deleted if the writing or the renaming fails.
+     *
+     * @param file      the cache file
+     * @param graph     the navigation graph of the board
+     * @param openCount the number of open cells
+     * @param distances the distances
+     */
+    private static void write(File file, NavigationGraph graph, int openCount, short[] distances) {
+        File temporary = null;
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            temporary = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(graph.getHash());
+                out.writeInt(graph.getSize());
+                out.writeInt(openCount);
+                for (int i = 0; i < graph.getWallWordCount(); i++) {
+                    out.writeLong(graph.getWallWord(i));
+                }
+                for (short distance : distances) {
+                    out.writeShort(distance);
+                }
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temporary = null;
+        } catch (IOException | SecurityException e) {
+            System.err.println("Error while writing the distances cache " + file + ": " + e.getMessage());
+        } finally {
+            if (temporary != null && !temporary.delete()) {
+                temporary.deleteOnExit(); // a partial file that cannot be deleted now
+            }
+        }
+    }
+}
@@ -6,15 +6,35 @@ import java.awt.*;
  * An element (pacman or ghost) of a level of the pacman game
  *
  * @author Leia
- * @inv getLocation() != null && getLocation().x >= 0 && getLocation().y >= 0
+ * @inv getX() >= 0 && getY() >= 0
  */
 public interface Element {
 
+    /**
+     * Give the column number of the initial location of the element in the
+     * game board
+     *
+     * @return the element column number
+     */
+    int getX();
+
+    /**
+     * Give the row number of the initial location of the element in the game
+     * board
+     *
+     * @return the element row number
+     */
+    int getY();
+
     /**
      * Give the initial location of the element in the game board, s.t. x is the
      * column number and y the row number
      *
-     * @return the element location
+     * @return a new point at the element location, that may be modified
+     * without changing the element
+     * @post ret != null && ret.x == getX() && ret.y == getY()
      */
-    Point getLocation();
+    default Point getLocation() {
+        return new Point(getX(), getY());
+    }
 }
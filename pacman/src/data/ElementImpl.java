@@ -1,12 +1,11 @@
 package data;
 
-import java.awt.*;
-
 /**
- * An implementation of the {@link Element} interface
+ * An implementation of the {@link Element} interface. The location is
+ * immutable, packed in a single long.
  *
  * @author Leia
- * @inv getLocation() != null && getLocation().x >= 0 && getLocation().y >= 0
+ * @inv getX() >= 0 && getY() >= 0
  */
 public class ElementImpl implements Element {
     //--------------------------------------------------------------
@@ -14,9 +13,9 @@ public class ElementImpl implements Element {
     //--------------------------------------------------------------
 
     /**
-     * the element location
+     * the element location, packed (see {@link #pack(int, int)})
      */
-    private final Point point;
+    private final long location;
 
     //--------------------------------------------------------------
     // Constructor
@@ -25,24 +24,55 @@ public class ElementImpl implements Element {
     /**
      * Constructor
      *
-     * @param point the element location
-     * @pre point != null && point.x >= 0 && point.y >= 0
+     * @param x the element column number
+     * @param y the element row number
+     * @pre x >= 0 && y >= 0
      */
-    public ElementImpl(Point point) {
-        assert point != null && point.x >= 0 && point.y >= 0 : "Precondition violated";
+    public ElementImpl(int x, int y) {
+        assert x >= 0 && y >= 0 : "Precondition violated";
 
-        this.point = point;
+        this.location = pack(x, y);
 
         invariant();
     }
 
     //--------------------------------------------------------------
-    // Getter
+    // Getters
     //--------------------------------------------------------------
 
     @Override
-    public Point getLocation() {
-        return point;
+    public int getX() {
+        return (int) (location >>> 32);
+    }
+
+    @Override
+    public int getY() {
+        return (int) location;
+    }
+
+    /**
+     * Give the packed location of the element: two elements are at the same
+     * location if and only if their packed locations are equal
+     *
+     * @return the packed location
+     */
+    public long getPackedLocation() {
+        return location;
+    }
+
+    //--------------------------------------------------------------
+    // Static method
+    //--------------------------------------------------------------
+
+    /**
+     * Pack a location in a long
+     *
+     * @param x the column number
+     * @param y the row number
+     * @return the packed location, x in the high int and y in the low int
+     */
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
     }
 
     //--------------------------------------------------------------
@@ -53,6 +83,6 @@ public class ElementImpl implements Element {
      * Check the class invariants
      */
     protected final void invariant() {
-        assert getLocation() != null && getLocation().x >= 0 && getLocation().y >= 0 : "Invariant violated";
+        assert getX() >= 0 && getY() >= 0 : "Invariant violated";
     }
 }
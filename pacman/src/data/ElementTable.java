@@ -0,0 +1,220 @@
+package data;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The elements of a level in primitive arrays: the location of pacman, and
+ * the locations and names of the ghosts, in the order of the elements of the
+ * level (the order of the level file). The names of the ghosts are stored
+ * once each and referenced by index. A table is immutable.
+ *
+ * @author Leia
+ * @inv getGhostCount() >= 0 && getNameCount() <= getGhostCount()
+ */
+public final class ElementTable {
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the column number of pacman (-1 if the level has no pacman)
+     */
+    private final int pacmanX;
+
+    /**
+     * the row number of pacman (-1 if the level has no pacman)
+     */
+    private final int pacmanY;
+
+    /**
+     * the column number of each ghost
+     */
+    private final int[] ghostX;
+
+    /**
+     * the row number of each ghost
+     */
+    private final int[] ghostY;
+
+    /**
+     * the index of the name of each ghost
+     */
+    private final int[] ghostNames;
+
+    /**
+     * the distinct names of the ghosts, in the order of their first ghost
+     */
+    private final String[] names;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param elements the elements of a level, in their order. If there are
+     *                 several pacmans, only the first one is kept.
+     * @pre elements != null
+     */
+    public ElementTable(Collection<Element> elements) {
+        assert elements != null : "precondition violated";
+
+        int x = -1;
+        int y = -1;
+        int[] xs = new int[elements.size()];
+        int[] ys = new int[elements.size()];
+        int[] indexes = new int[elements.size()];
+        String[] distinct = new String[elements.size()];
+        Map<String, Integer> known = new HashMap<>();
+        int count = 0;
+        for (Element element : elements) {
+            if (element instanceof Ghost) {
+                String name = ((Ghost) element).getName();
+                Integer index = known.get(name);
+                if (index == null) {
+                    index = known.size();
+                    known.put(name, index);
+                    distinct[index] = name;
+                }
+                xs[count] = element.getX();
+                ys[count] = element.getY();
+                indexes[count] = index;
+                count++;
+            } else if (element instanceof Pacman && x < 0) {
+                x = element.getX();
+                y = element.getY();
+            }
+        }
+
+        this.pacmanX = x;
+        this.pacmanY = y;
+        this.ghostX = Arrays.copyOf(xs, count);
+        this.ghostY = Arrays.copyOf(ys, count);
+        this.ghostNames = Arrays.copyOf(indexes, count);
+        this.names = Arrays.copyOf(distinct, known.size());
+
+        invariant();
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Check whether the level has a pacman
+     *
+     * @return true if the level has a pacman
+     */
+    public boolean hasPacman() {
+        return pacmanX >= 0;
+    }
+
+    /**
+     * Give the column number of the initial location of pacman
+     *
+     * @return the column number
+     * @pre hasPacman()
+     */
+    public int getPacmanX() {
+        return pacmanX;
+    }
+
+    /**
+     * Give the row number of the initial location of pacman
+     *
+     * @return the row number
+     * @pre hasPacman()
+     */
+    public int getPacmanY() {
+        return pacmanY;
+    }
+
+    /**
+     * Give the number of ghosts
+     *
+     * @return the number of ghosts
+     */
+    public int getGhostCount() {
+        return ghostX.length;
+    }
+
+    /**
+     * Give the column number of the initial location of a ghost
+     *
+     * @param ghost the ghost index
+     * @return the column number
+     * @pre ghost >= 0 && ghost < getGhostCount()
+     */
+    public int getGhostX(int ghost) {
+        return ghostX[ghost];
+    }
+
+    /**
+     * Give the row number of the initial location of a ghost
+     *
+     * @param ghost the ghost index
+     * @return the row number
+     * @pre ghost >= 0 && ghost < getGhostCount()
+     */
+    public int getGhostY(int ghost) {
+        return ghostY[ghost];
+    }
+
+    /**
+     * Give the index of the name of a ghost
+     *
+     * @param ghost the ghost index
+     * @return the name index (see {@link #getName(int)})
+     * @pre ghost >= 0 && ghost < getGhostCount()
+     */
+    public int getGhostNameIndex(int ghost) {
+        return ghostNames[ghost];
+    }
+
+    /**
+     * Give the name of a ghost
+     *
+     * @param ghost the ghost index
+     * @return the ghost name
+     * @pre ghost >= 0 && ghost < getGhostCount()
+     */
+    public String getGhostName(int ghost) {
+        return names[ghostNames[ghost]];
+    }
+
+    /**
+     * Give the number of distinct names of the ghosts
+     *
+     * @return the number of names
+     */
+    public int getNameCount() {
+        return names.length;
+    }
+
+    /**
+     * Give a name of the ghosts
+     *
+     * @param index the name index
+     * @return the name
+     * @pre index >= 0 && index < getNameCount()
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    //--------------------------------------------------------------
+    // Private method
+    //--------------------------------------------------------------
+
+    /**
+     * Check the class invariants
+     */
+    private void invariant() {
+        assert getGhostCount() >= 0 && getNameCount() <= getGhostCount() : "Invariant violated";
+    }
+}
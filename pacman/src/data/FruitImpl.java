@@ -68,6 +68,34 @@ public class FruitImpl implements Fruit {
         return value;
     }
 
+    //--------------------------------------------------------------
+    // equals/hashCode
+    //--------------------------------------------------------------
+
+    /**
+     * Two fruits are equal if they have the same key, name and value (see
+     * {@link Interning})
+     *
+     * @param o the object to compare
+     * @return true if o is an equal fruit
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FruitImpl)) {
+            return false;
+        }
+        FruitImpl fruit = (FruitImpl) o;
+        return key == fruit.key && value == fruit.value && name.equals(fruit.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return (key * 31 + value) * 31 + name.hashCode();
+    }
+
     //--------------------------------------------------------------
     // Private method
     //--------------------------------------------------------------
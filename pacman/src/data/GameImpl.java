@@ -1,19 +1,33 @@
 package data;
 
-import java.awt.*;
 import java.io.*;
 import java.text.ParseException;
-import java.util.List;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Implementation of the {@link Game} interface that loads game levels from
  * files named "levelN" where N is the level number (the first level number=1)
- * in a directory which path is provided at initialization.
+ * in a directory which path is provided at initialization. When a file
+ * "levelN.bin" in the {@link BinaryLevelFormat binary format} is present and
+ * is not older than the file "levelN", it is loaded instead.
+ * <p>
+ * The directory is listed once in a {@link LevelIndex}: the levels files are
+ * not accessed until they are loaded. When the game watches the directory,
+ * the index is kept up to date and the levels whose files change are
+ * reloaded; the game should then be {@link #close() closed} to stop watching
+ * the directory.
+ * <p>
+ * When an executor is provided, the next level is loaded in the background
+ * while the current one is played, so that {@link #nextLevel()} does not
+ * block on the file system.
  *
  * @author Leia
  */
-public class GameImpl implements Game {
+public class GameImpl implements Game, Closeable {
 
     //--------------------------------------------------------------
     // Attributes
@@ -23,11 +37,62 @@ public class GameImpl implements Game {
      */
     private final File directory;
 
+    /**
+     * the index of the levels files of the directory
+     */
+    private final LevelIndex index;
+
     /**
      * the number of the last loaded level
      */
     private int currentLevel;
 
+    /**
+     * the loader used to read the levels files
+     */
+    private final LevelLoader loader;
+
+    /**
+     * the cache of the loaded levels (null if the levels are not cached)
+     */
+    private final LevelCache cache;
+
+    /**
+     * the executor used to load the next level in the background (null if the
+     * levels are loaded synchronously)
+     */
+    private final ExecutorService prefetcher;
+
+    /**
+     * the loaders used by the background loads, one per thread of the
+     * executors: a loader is not thread safe, and a cancelled load may still
+     * be running when the next one starts
+     */
+    private static final ThreadLocal<LevelLoader> PREFETCH_LOADERS = ThreadLocal.withInitial(LevelLoader::new);
+
+    /**
+     * the background load of the level following the last loaded level (null
+     * if there is none). It is set by the game thread only; it is volatile
+     * because the game may be {@link #close() closed} by another thread.
+     */
+    private volatile Future<Level> prefetched;
+
+    /**
+     * the number of the level loaded in the background
+     */
+    private volatile int prefetchedNumber;
+
+    /**
+     * true if the file of the level loaded in the background has changed
+     * since the load started
+     */
+    private volatile boolean prefetchedChanged;
+
+    /**
+     * the statistics of the background loads
+     */
+    private final PrefetchStatistics statistics;
+
     //--------------------------------------------------------------
     // Constructor
     //--------------------------------------------------------------
@@ -39,9 +104,65 @@ public class GameImpl implements Game {
      * @pre directory.isDirectory()
      */
     public GameImpl(File directory) {
+        this(directory, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory that contains the levels files
+     * @param cache     the cache of the loaded levels, that may be shared
+     *                  with other games (null if the levels are not cached)
+     * @pre directory.isDirectory()
+     */
+    public GameImpl(File directory, LevelCache cache) {
+        this(directory, cache, null);
+    }
+
+    /**
+     * Constructor. The first level starts loading in the background right
+     * away.
+     *
+     * @param directory  the directory that contains the levels files
+     * @param cache      the cache of the loaded levels, that may be shared
+     *                   with other games (null if the levels are not cached)
+     * @param prefetcher the executor used to load the next level in the
+     *                   background, that may be shared with other games (null
+     *                   if the levels are loaded synchronously). It is not shut
+     *                   down by this game.
+     * @pre directory.isDirectory()
+     */
+    public GameImpl(File directory, LevelCache cache, ExecutorService prefetcher) {
+        this(directory, cache, prefetcher, false);
+    }
+
+    /**
+     * Constructor. The first level starts loading in the background right
+     * away.
+     *
+     * @param directory  the directory that contains the levels files
+     * @param cache      the cache of the loaded levels, that may be shared
+     *                   with other games (null if the levels are not cached)
+     * @param prefetcher the executor used to load the next level in the
+     *                   background, that may be shared with other games (null
+     *                   if the levels are loaded synchronously). It is not shut
+     *                   down by this game.
+     * @param watch      true to watch the directory and reload the levels
+     *                   whose files change (a thread runs until the game is
+     *                   closed), false to list it once
+     * @pre directory.isDirectory()
+     */
+    public GameImpl(File directory, LevelCache cache, ExecutorService prefetcher, boolean watch) {
         assert directory.isDirectory() : "precondition violated";
 
         this.directory = directory;
+        this.loader = new LevelLoader();
+        this.cache = cache;
+        this.prefetcher = prefetcher;
+        this.statistics = new PrefetchStatistics();
+        this.index = new LevelIndex(directory, watch);
+        index.addListener(this::levelChanged);
+        prefetch(1);
     }
 
     //--------------------------------------------------------------
@@ -52,36 +173,129 @@ public class GameImpl implements Game {
         assert hasNextLevel() : "precondition violated";
 
         Level level = null;
+        currentLevel++;
         try {
-            level = loadLevel(new File(directory, "level" + (++currentLevel)));
+            level = takePrefetched();
+            if (level == null) {
+                level = loadLevel(currentLevel, loader);
+            }
 
         } catch (IOException | ParseException e) {
             System.err.println("Error while loading the level " + currentLevel + ": " + e.getMessage());
             if (hasNextLevel()) {
-                level = new LevelImpl(new HashSet<>(), new ArrayList<>(), new HashMap<>(), new Properties());
+                level = new LevelImpl(new ArrayList<>(), new ArrayList<>(), new HashMap<>(), new Properties());
             }
         }
 
+        prefetch(currentLevel + 1);
+
         assert level != null : "postcondition violated";
         return level;
     }
 
     @Override
     public boolean hasNextLevel() {
-        return new File(directory, "level" + (currentLevel + 1)).isFile();
+        return prefetched != null || index.hasLevel(currentLevel + 1);
+    }
+
+    //--------------------------------------------------------------
+    // Closeable overriden method
+    //--------------------------------------------------------------
+
+    /**
+     * Stop watching the directory (if it is watched) and cancel the
+     * background load. The game can still be played, but the changes of the
+     * levels files are not detected anymore.
+     */
+    @Override
+    public void close() {
+        index.close();
+        Future<Level> future = prefetched;
+        prefetched = null;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    //--------------------------------------------------------------
+    // Getter
+    //--------------------------------------------------------------
+
+    /**
+     * Give the statistics of the background loads of the levels
+     *
+     * @return the statistics (all the levels are missed if the levels are
+     * loaded synchronously)
+     */
+    public PrefetchStatistics getPrefetchStatistics() {
+        return statistics;
+    }
+
+    //--------------------------------------------------------------
+    // Levels
+    //--------------------------------------------------------------
+
+    /**
+     * Give the levels of this game, from the first one, without changing the
+     * current level nor the background load. Each level is loaded when the
+     * iteration reaches it (through the cache, if any), so that the levels
+     * are not held together in memory. A level that cannot be loaded is given
+     * as an empty level, as by {@link #nextLevel()}.
+     *
+     * @return the levels, that may be iterated several times
+     */
+    public Iterable<Level> levels() {
+        return () -> new Iterator<Level>() {
+
+            /**
+             * the loader of the iteration, so that the loader of the game is
+             * never shared
+             */
+            private final LevelLoader levelLoader = new LevelLoader();
+
+            /**
+             * the number of the last level of the iteration
+             */
+            private int number;
+
+            @Override
+            public boolean hasNext() {
+                return index.hasLevel(number + 1);
+            }
+
+            @Override
+            public Level next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                number++;
+                try {
+                    return loadLevel(number, levelLoader);
+                } catch (IOException | ParseException e) {
+                    System.err.println("Error while loading the level " + number + ": " + e.getMessage());
+                    return new LevelImpl(new ArrayList<>(), new ArrayList<>(), new HashMap<>(), new Properties());
+                }
+            }
+        };
     }
 
     //--------------------------------------------------------------
     // toString
     //--------------------------------------------------------------
 
+    /**
+     * Display all the levels of this game: their elements, their properties
+     * and their boards. The levels are read through {@link #levels()}, so
+     * that the game is not consumed.
+     *
+     * @return the levels of this game
+     */
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
         // iterate over levels and display each level
-        while (hasNextLevel()) {
+        for (Level level : levels()) {
             builder.append("\n==========================================");
-            Level level = nextLevel();
             // display the elements
             for (Element element : level.getElements()) {
                 if (element instanceof Pacman) {
@@ -115,133 +329,99 @@ public class GameImpl implements Game {
     //--------------------------------------------------------------
 
     /**
-     * Load a level from the given file. The input file contains 4 parts. Each
-     * part is begins with a description line (starting with #).
+     * Start loading the given level in the background, if an executor is
+     * available and the level exists
      *
-     * @param file the file that contains the level description
-     * @return the level loaded from the file
-     * @throws FileNotFoundException if the file cannot be found
-     * @throws IOException           if an error occurs while reading the file
-     * @throws ParseException        if a line format is not valid
-     * @post ret != null
+     * @param number the level number
      */
-    private Level loadLevel(File file) throws FileNotFoundException, IOException, ParseException {
-        Map<Character, Fruit> fruits = new HashMap<>(); // the fruits map (key,fruit)
-        Collection<Element> elements = new HashSet<>(); // the ghosts and pacman
-        List<String> board = new ArrayList<>(); // the lines that represent the board rows
-        Properties properties = new Properties(); // the properties
-        int part = 0; // the current part number
-
-        // read and parse the lines from the file
-        int lineCpt = 0; // a counter for the lines numbers
-        int firstBoardLine = 0; // the number of the first line of the board
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine(); // read the first line
-            while (line != null) {
-                lineCpt++;
-                if (!line.trim().isEmpty()) {
-                    if (line.startsWith("#")) {
-                        // the description of a new part (starting with #)
-                        part++;
-                        if (part == 1) {
-                            firstBoardLine = lineCpt;
-                        }
-                    } else {
-                        // a non empty line that belongs to one of the parts
-                        switch (part) {
-                            case 1: // game board (lines)
-                                board.add(line.trim());
-                                break;
-                            case 2: // ghosts and pacman
-                                Element element = parseElement(line.trim(), lineCpt);
-                                elements.add(element);
-                                break;
-                            case 3: // fruits
-                                Fruit fruit = parseFruit(line.trim(), lineCpt);
-                                fruits.put(fruit.getKey(), fruit);
-                                break;
-                            case 4: // properties
-                                String[] tokens = line.trim().split("=");
-                                properties.put(tokens[0].trim(), tokens[1].trim());
-                                break;
-                        }
-                    }
-                }
-                line = reader.readLine(); // read the next line
-            }
-        }
-
-        // check the length of the bord lines
-        lineCpt = firstBoardLine;
-        for (String line : board) {
-            lineCpt++;
-            if (line.length() != board.size()) {
-                throw new ParseException("The line \"" + line + "\" contains " + line.length() + " characters. Should be " + board.size(), lineCpt);
+    private void prefetch(int number) {
+        if (prefetcher != null && index.hasLevel(number)) {
+            // reset the flag first: a change notified once the number is
+            // published is never lost, and an earlier one is read by the load
+            prefetchedChanged = false;
+            prefetchedNumber = number;
+            try {
+                prefetched = prefetcher.submit(() -> loadLevel(number, PREFETCH_LOADERS.get()));
+            } catch (RejectedExecutionException e) {
+                prefetched = null; // the level will be loaded synchronously
             }
         }
-
-        // make the new Level instance
-        return new LevelImpl(elements, board, fruits, properties);
     }
 
     /**
-     * Parse a line representing a fruit
+     * Take the background load of the current level
      *
-     * @param line   the line in the form key,name,value
-     * @param lineNb the line number
-     * @return the fruit
-     * @throws ParseException if the line format is not valid
-     */
-    private Fruit parseFruit(String line, int lineNb) throws ParseException {
-        String[] tokens = line.split(",");
-        if (tokens.length != 3) {
-            throw new ParseException("The line \"" + line + "\" contains " + tokens.length + " tokens. Should be 3", lineNb);
-        }
-
-        char key = tokens[0].charAt(0); // the key
-        String name = tokens[1]; // the name
-        int value = Integer.parseInt(tokens[2]); // the value
-
-        if (name.isEmpty()) {
-            throw new ParseException("The line \"" + line + "\" contains an empty name", lineNb);
+     * @return the level loaded in the background, null if it was not loaded
+     * in the background or if the background load failed
+     */
+    private Level takePrefetched() {
+        Future<Level> future = prefetched;
+        prefetched = null;
+        if (future == null) {
+            statistics.addMissed();
+            return null;
         }
-        if (value <= 0) {
-            throw new ParseException("The line \"" + line + "\" contains an invalid value: " + value + ". Should be greater than 0", lineNb);
+        if (prefetchedChanged) {
+            // the level file has changed, the loaded level may be out of date
+            future.cancel(false);
+            statistics.addMissed();
+            return null;
         }
 
-        // make the new Fruit instance
-        return new FruitImpl(key, name, value);
+        boolean ready = future.isDone();
+        try {
+            Level level = future.get();
+            if (ready) {
+                statistics.addReady();
+            } else {
+                statistics.addWaited();
+            }
+            return level;
+        } catch (ExecutionException e) {
+            statistics.addFailed();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            statistics.addFailed();
+            return null;
+        }
     }
 
     /**
-     * Parse a line representing an element
+     * Called by the index when a file of a level has changed: the level is
+     * removed from the cache, and will be loaded again if it was loaded in the
+     * background
      *
-     * @param line   the line in the form name,x,y
-     * @param lineNb the line number
-     * @return the element
-     * @throws ParseException if the line format is not valid
-     */
-    private Element parseElement(String line, int lineNb) throws ParseException {
-        String[] tokens = line.split(",");
-        if (tokens.length != 3) {
-            throw new ParseException("The line \"" + line + "\" contains " + tokens.length + " tokens. Should be 3", lineNb);
-        }
-
-        String name = tokens[0];
-        Point point = new Point(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
-
-        if (name.isEmpty()) {
-            throw new ParseException("The line \"" + line + "\" contains an empty name", lineNb);
+     * @param number the level number
+     * @param file   the file that has changed
+     */
+    private void levelChanged(int number, File file) {
+        if (cache != null) {
+            cache.invalidate(file);
         }
-        if (point.x < 0 || point.y < 0) {
-            throw new ParseException("The line \"" + line + "\" contains an invalid value: " + point + ". x and y should be greater or equal to 0", lineNb);
+        if (number == prefetchedNumber) {
+            prefetchedChanged = true;
         }
+    }
 
-        if ("pacman".equals(name)) {
-            // make a new Pacman instance
-            return new PacmanImpl(point);
+    /**
+     * Load a level from its indexed file. The input file contains 4 parts.
+     * Each part is begins with a description line (starting with #), or is a
+     * binary level file.
+     *
+     * @param number the level number
+     * @param loader the loader to use (not shared with other threads)
+     * @return the level loaded from the file
+     * @throws IOException    if an error occurs while reading the file, or if
+     *                        the level does not exist anymore
+     * @throws ParseException if a line format is not valid
+     * @post ret != null
+     */
+    private Level loadLevel(int number, LevelLoader loader) throws IOException, ParseException {
+        LevelIndex.Entry entry = index.getEntry(number);
+        if (entry == null) {
+            throw new FileNotFoundException("The files of the level " + number + " have been deleted from " + directory);
         }
-        // make a new Ghost instance
-        return new GhostImpl(point, name);
+        return cache != null ? cache.get(entry, loader) : loader.load(entry.getFile());
     }
 }
@@ -1,6 +1,5 @@
 package data;
 
-import java.awt.*;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -47,19 +46,30 @@ public class GameMock implements Game {
                 List<Element> elements = new ArrayList<>();
                 for (int i = 0; i < ELEMENTS.length; i++) {
                     String name = ELEMENTS[i];
-                    Point point = new Point(ELEMENTS_LOCATIONS[i * 2], ELEMENTS_LOCATIONS[i * 2 + 1]);
+                    int x = ELEMENTS_LOCATIONS[i * 2];
+                    int y = ELEMENTS_LOCATIONS[i * 2 + 1];
                     if ("pacman".equals(name)) {
                         elements.add(new Pacman() {
                             @Override
-                            public Point getLocation() {
-                                return point;
+                            public int getX() {
+                                return x;
+                            }
+
+                            @Override
+                            public int getY() {
+                                return y;
                             }
                         });
                     } else {
                         elements.add(new Ghost() {
                             @Override
-                            public Point getLocation() {
-                                return point;
+                            public int getX() {
+                                return x;
+                            }
+
+                            @Override
+                            public int getY() {
+                                return y;
                             }
 
                             @Override
@@ -87,15 +97,30 @@ public class GameMock implements Game {
                 if (isWall(x, y)) {
                     return null;
                 }
+                return getFruitByIndex(x + y);
+            }
+
+            @Override
+            public int getFruitIndex(int x, int y) {
+                return isWall(x, y) ? -1 : x + y;
+            }
+
+            @Override
+            public int getFruitCount() {
+                return SIZE * 2 - 1;
+            }
+
+            @Override
+            public Fruit getFruitByIndex(int index) {
                 return new Fruit() {
                     @Override
                     public String getName() {
-                        return FRUITS[(x + y) % FRUITS.length];
+                        return FRUITS[index % FRUITS.length];
                     }
 
                     @Override
                     public int getValue() {
-                        return x + y;
+                        return index;
                     }
 
                     @Override
@@ -0,0 +1,236 @@
+package data;
+
+import java.util.*;
+
+/**
+ * Implementation of the {@link Game} interface that builds random levels, to
+ * test the engine and the view on boards of any size. The levels are
+ * reproducible: the same seed and configuration always give the same levels.
+ * <p>
+ * The board is a maze carved with the sidewinder algorithm, that works row by
+ * row, so that the boards up to 10000x10000 are built without any other
+ * memory than the board itself. The rooms of the maze are the cells of odd
+ * coordinates; the walls between the rooms are then knocked out at random
+ * until the wall density of the configuration is reached, which opens loops.
+ * Each open cell gets a fruit drawn from the fruits distribution. The
+ * elements are put on distinct rooms.
+ * <p>
+ * The levels may be written in the text format with a
+ * {@link LevelTextWriter}.
+ *
+ * @author Leia
+ */
+public class GeneratedGame implements Game {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the key of the walls in the boards
+     */
+    private static final char WALL = 'w';
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the seed of the game
+     */
+    private final long seed;
+
+    /**
+     * the number of levels of the game
+     */
+    private final int levelCount;
+
+    /**
+     * the configuration of the levels
+     */
+    private final GeneratorConfig config;
+
+    /**
+     * the number of the last built level
+     */
+    private int currentLevel;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param seed       the seed of the game
+     * @param levelCount the number of levels of the game
+     * @param config     the configuration of the levels
+     * @pre levelCount >= 0 && config != null
+     */
+    public GeneratedGame(long seed, int levelCount, GeneratorConfig config) {
+        assert levelCount >= 0 && config != null : "precondition violated";
+
+        this.seed = seed;
+        this.levelCount = levelCount;
+        this.config = config;
+    }
+
+    //--------------------------------------------------------------
+    // Game overriden methods
+    //--------------------------------------------------------------
+
+    @Override
+    public Level nextLevel() {
+        assert hasNextLevel() : "precondition violated";
+
+        currentLevel++;
+        return generate(config, levelSeed(currentLevel));
+    }
+
+    @Override
+    public boolean hasNextLevel() {
+        return currentLevel < levelCount;
+    }
+
+    //--------------------------------------------------------------
+    // Static method
+    //--------------------------------------------------------------
+
+    /**
+     * Build a random level
+     *
+     * @param config the configuration of the level
+     * @param seed   the seed of the level
+     * @return the level, the same for the same configuration and seed
+     * @pre config != null
+     * @post ret != null && ret.getSize() == config.getSize()
+     */
+    public static Level generate(GeneratorConfig config, long seed) {
+        assert config != null : "precondition violated";
+
+        SplittableRandom random = new SplittableRandom(seed);
+        SplittableRandom mazeRandom = random.split();
+        SplittableRandom fruitRandom = random.split();
+        SplittableRandom elementRandom = random.split();
+
+        int size = config.getSize();
+        int rooms = (size - 1) / 2; // the number of rooms in a row or a column of rooms
+        double knockOut = knockOutProbability(size, rooms, config.getWallDensity());
+
+        BoardBuilder board = new BoardBuilder(size);
+        boolean[] east = new boolean[rooms]; // the rooms open towards the next room of their row
+        boolean[] north = new boolean[rooms]; // the rooms open towards the room above
+        int decided = -1; // the row of rooms of east and north
+        for (int y = 0; y < size; y++) {
+            int row = y / 2; // the row of rooms of y, or of the row below when y is even
+            if (y > 0 && row < rooms && row != decided) {
+                sidewinder(mazeRandom, row, east, north);
+                decided = row;
+            }
+            for (int x = 0; x < size; x++) {
+                boolean wall;
+                if (x == 0 || y == 0 || x == size - 1 || y == size - 1 || (x % 2 == 0 && y % 2 == 0)) {
+                    wall = true; // a border or a pillar
+                } else if (x % 2 == 1 && y % 2 == 1) {
+                    wall = false; // a room
+                } else {
+                    // a connector between two rooms
+                    boolean carved = y % 2 == 1 ? x / 2 < rooms && east[x / 2 - 1] : row < rooms && north[x / 2];
+                    wall = !carved && mazeRandom.nextDouble() >= knockOut;
+                }
+                if (wall) {
+                    board.set(x, y, WALL);
+                } else {
+                    board.set(x, y, config.getFruit(config.drawFruit(fruitRandom.nextDouble())).getKey());
+                }
+            }
+        }
+
+        // the elements, on distinct rooms
+        Collection<Element> elements = new ArrayList<>();
+        Set<Long> used = new HashSet<>();
+        int count = Math.min(1 + config.getGhostCount(), Math.max(rooms * rooms, 0));
+        while (elements.size() < count) {
+            int x = 2 * elementRandom.nextInt(rooms) + 1;
+            int y = 2 * elementRandom.nextInt(rooms) + 1;
+            if (used.add(ElementImpl.pack(x, y))) {
+                elements.add(elements.isEmpty() ? new PacmanImpl(x, y) : new GhostImpl(x, y, Interning.name("ghost-" + elements.size())));
+            }
+        }
+
+        Map<Character, Fruit> fruits = new LinkedHashMap<>();
+        for (int i = 0; i < config.getFruitCount(); i++) {
+            fruits.put(config.getFruit(i).getKey(), config.getFruit(i));
+        }
+        Properties properties = new Properties();
+        properties.setProperty(LevelSettings.WAIT_DURATION, String.valueOf(LevelSettings.DEFAULT_WAIT_DURATION));
+        properties.setProperty(LevelSettings.POWER_DURATION, String.valueOf(LevelSettings.DEFAULT_POWER_DURATION));
+        return board.build(elements, fruits, properties);
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Give the seed of a level of this game
+     *
+     * @param number the level number
+     * @return the seed of the level
+     */
+    private long levelSeed(int number) {
+        return new SplittableRandom(seed ^ number * 0x9E3779B97F4A7C15L).nextLong();
+    }
+
+    /**
+     * Carve a row of rooms with the sidewinder algorithm: the rooms of the
+     * first row are all joined; in the other rows, the rooms are joined in
+     * runs of random length, and a random room of each run is joined to the
+     * room above.
+     *
+     * @param random the random generator of the maze
+     * @param row    the index of the row of rooms
+     * @param east   set to true for the rooms joined to the next room
+     * @param north  set to true for the rooms joined to the room above
+     */
+    private static void sidewinder(SplittableRandom random, int row, boolean[] east, boolean[] north) {
+        Arrays.fill(north, false);
+        int runStart = 0;
+        for (int room = 0; room < east.length; room++) {
+            boolean last = room == east.length - 1;
+            if (row == 0) {
+                east[room] = !last;
+            } else if (!last && random.nextBoolean()) {
+                east[room] = true;
+            } else {
+                east[room] = false;
+                north[runStart + random.nextInt(room - runStart + 1)] = true;
+                runStart = room + 1;
+            }
+        }
+    }
+
+    /**
+     * Give the probability of knocking out a wall between two rooms to reach
+     * the given wall density
+     *
+     * @param size    the number of rows/columns of the board
+     * @param rooms   the number of rooms in a row of rooms
+     * @param density the target wall density
+     * @return the probability, in [0, 1]
+     */
+    private static double knockOutProbability(int size, int rooms, double density) {
+        double cells = (double) size * size;
+        double inner = (double) (size - 2) * (size - 2);
+        double pillars = Math.floor((size - 2) / 2.0) * Math.floor((size - 2) / 2.0);
+        double roomCells = (double) rooms * rooms;
+        double connectors = inner - pillars - roomCells;
+        double carved = Math.max(roomCells - 1, 0); // the maze is a spanning tree of the rooms
+        double removable = connectors - carved;
+        double walls = cells - inner + pillars + removable; // the walls of the maze
+        if (removable <= 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, (walls - density * cells) / removable));
+    }
+}
@@ -0,0 +1,203 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * The configuration of the levels built by a {@link GeneratedGame}: the board
+ * size, the proportion of walls, the number of ghosts and the distribution of
+ * the fruits on the open cells. A configuration is immutable.
+ *
+ * @author Leia
+ * @inv getSize() >= 3 && getWallDensity() >= 0 && getWallDensity() <= 1 && getGhostCount() >= 0
+ * @inv getFruitCount() > 0 && getFruitCount() <= CellCode.MAX_FRUITS
+ */
+public class GeneratorConfig {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the default fruits, as in the levels of the resources
+     */
+    private static final Fruit[] DEFAULT_FRUITS = {
+            Interning.fruit('g', "Gomme", 10),
+            Interning.fruit('S', "Super", 10),
+            Interning.fruit('c', "Cerise", 100),
+            Interning.fruit('f', "Fraise", 300),
+            Interning.fruit('o', "Orange", 500),
+            Interning.fruit('k', "Clé", 5000)};
+
+    /**
+     * the default weights of the fruits
+     */
+    private static final int[] DEFAULT_WEIGHTS = {900, 20, 40, 25, 14, 1};
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the number of rows/columns of the boards
+     */
+    private final int size;
+
+    /**
+     * the target proportion of walls among the cells of the boards
+     */
+    private final double wallDensity;
+
+    /**
+     * the number of ghosts of the levels
+     */
+    private final int ghostCount;
+
+    /**
+     * the fruits that may be put on the open cells
+     */
+    private final Fruit[] fruits;
+
+    /**
+     * the cumulated weights of the fruits
+     */
+    private final int[] cumulatedWeights;
+
+    //--------------------------------------------------------------
+    // Constructors
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor. The levels have 4 ghosts, walls on 45% of the cells and
+     * mostly "Gomme" fruits.
+     *
+     * @param size the number of rows/columns of the boards
+     * @pre size >= 3
+     */
+    public GeneratorConfig(int size) {
+        this(size, 0.45, 4, DEFAULT_FRUITS, DEFAULT_WEIGHTS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param size        the number of rows/columns of the boards
+     * @param wallDensity the target proportion of walls among the cells. The
+     *                    boards always have walls on their border and on the
+     *                    cells of even coordinates, so a lower density is not
+     *                    reached; a higher density is not reached either when
+     *                    it would disconnect the board.
+     * @param ghostCount  the number of ghosts of the levels
+     * @param fruits      the fruits that may be put on the open cells
+     * @param weights     the relative frequency of each fruit
+     * @pre size >= 3 && wallDensity >= 0 && wallDensity <= 1 && ghostCount >= 0
+     * @pre fruits != null && fruits.length > 0 && fruits.length <= CellCode.MAX_FRUITS
+     * @pre weights != null && weights.length == fruits.length
+     * @pre forAll (weight : weights | weight >= 0) && sum(weights) > 0
+     * @pre forAll (fruit : fruits | fruit.getKey() != 'w'), with different keys
+     */
+    public GeneratorConfig(int size, double wallDensity, int ghostCount, Fruit[] fruits, int[] weights) {
+        assert size >= 3 && wallDensity >= 0 && wallDensity <= 1 && ghostCount >= 0 : "precondition violated";
+        assert fruits != null && fruits.length > 0 && fruits.length <= CellCode.MAX_FRUITS : "precondition violated";
+        assert weights != null && weights.length == fruits.length : "precondition violated";
+
+        this.size = size;
+        this.wallDensity = wallDensity;
+        this.ghostCount = ghostCount;
+        this.fruits = fruits.clone();
+        this.cumulatedWeights = new int[weights.length];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            assert weights[i] >= 0 && fruits[i].getKey() != 'w' : "precondition violated";
+            total += weights[i];
+            cumulatedWeights[i] = total;
+        }
+        assert total > 0 : "precondition violated";
+
+        invariant();
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the number of rows/columns of the boards
+     *
+     * @return the board size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Give the target proportion of walls among the cells of the boards
+     *
+     * @return the wall density, in [0, 1]
+     */
+    public double getWallDensity() {
+        return wallDensity;
+    }
+
+    /**
+     * Give the number of ghosts of the levels
+     *
+     * @return the number of ghosts
+     */
+    public int getGhostCount() {
+        return ghostCount;
+    }
+
+    /**
+     * Give the number of fruits that may be put on the open cells
+     *
+     * @return the number of fruits
+     */
+    public int getFruitCount() {
+        return fruits.length;
+    }
+
+    /**
+     * Give a fruit that may be put on the open cells
+     *
+     * @param index the fruit index
+     * @return the fruit
+     * @pre index >= 0 && index < getFruitCount()
+     */
+    public Fruit getFruit(int index) {
+        return fruits[index];
+    }
+
+    //--------------------------------------------------------------
+    // Package method
+    //--------------------------------------------------------------
+
+    /**
+     * Give the fruit of a random draw
+     *
+     * @param draw a random number in [0, 1[
+     * @return the index of the drawn fruit, according to the weights
+     */
+    int drawFruit(double draw) {
+        int target = (int) (draw * cumulatedWeights[cumulatedWeights.length - 1]);
+        int index = Arrays.binarySearch(cumulatedWeights, target + 1);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        while (index > 0 && cumulatedWeights[index - 1] == cumulatedWeights[index]) {
+            index--; // skip back over the fruits of weight 0
+        }
+        return index;
+    }
+
+    //--------------------------------------------------------------
+    // Private method
+    //--------------------------------------------------------------
+
+    /**
+     * Check the class invariants
+     */
+    private void invariant() {
+        assert getSize() >= 3 && getWallDensity() >= 0 && getWallDensity() <= 1 && getGhostCount() >= 0 : "Invariant violated";
+        assert getFruitCount() > 0 && getFruitCount() <= CellCode.MAX_FRUITS : "Invariant violated";
+    }
+}
@@ -1,12 +1,10 @@
 package data;
 
-import java.awt.*;
-
 /**
  * An implementation of the {@link Ghost} interface
  *
  * @author Leia
- * @inv getLocation() != null && getLocation().x >= 0 && getLocation().y >= 0
+ * @inv getX() >= 0 && getY() >= 0
  * @inv getName() != null && !getName().isEmpty()
  */
 public class GhostImpl extends ElementImpl implements Ghost {
@@ -26,13 +24,14 @@ public class GhostImpl extends ElementImpl implements Ghost {
     /**
      * Constructor
      *
-     * @param point the element location
-     * @param name  the ghost name
-     * @pre point != null && point.x >= 0 && point.y >= 0
+     * @param x    the element column number
+     * @param y    the element row number
+     * @param name the ghost name (see {@link Interning#name(String)})
+     * @pre x >= 0 && y >= 0
      * @pre name != null && !name.isEmpty()
      */
-    public GhostImpl(Point point, String name) {
-        super(point);
+    public GhostImpl(int x, int y, String name) {
+        super(x, y);
 
         assert name != null && !name.isEmpty() : "Precondition violated";
 
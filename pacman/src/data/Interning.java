@@ -0,0 +1,100 @@
+package data;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The canonical instances of the values shared by the levels: the fruits and
+ * the names. The loaders give the same {@link Fruit} instance for the same
+ * (key, name, value) triple, and the same String instance for the same name,
+ * whatever the level they come from, so that the levels do not hold copies
+ * of these values and that the canonical values can be compared by identity.
+ * <p>
+ * This class is thread-safe. The canonical instances are kept for the whole
+ * execution: the number of distinct fruits and names is expected to be small.
+ *
+ * @author Leia
+ */
+public final class Interning {
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the canonical fruits
+     */
+    private static final ConcurrentHashMap<Fruit, Fruit> FRUITS = new ConcurrentHashMap<>();
+
+    /**
+     * the canonical names
+     */
+    private static final ConcurrentHashMap<String, String> NAMES = new ConcurrentHashMap<>();
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * No instance
+     */
+    private Interning() {
+    }
+
+    //--------------------------------------------------------------
+    // Public methods
+    //--------------------------------------------------------------
+
+    /**
+     * Give the canonical fruit of the given triple
+     *
+     * @param key   the key that identifies the fruit
+     * @param name  the name of the fruit
+     * @param value the value of the fruit
+     * @return the canonical fruit
+     * @pre name != null && !name.isEmpty() && value > 0
+     * @post ret != null && ret.getKey() == key && ret.getName().equals(name) && ret.getValue() == value
+     */
+    public static Fruit fruit(char key, String name, int value) {
+        Fruit fruit = new FruitImpl(key, name, value);
+        Fruit canonical = FRUITS.get(fruit);
+        if (canonical != null) {
+            return canonical;
+        }
+        fruit = new FruitImpl(key, name(name), value);
+        canonical = FRUITS.putIfAbsent(fruit, fruit);
+        return canonical != null ? canonical : fruit;
+    }
+
+    /**
+     * Give the canonical instance of the given name
+     *
+     * @param name the name
+     * @return the canonical name
+     * @pre name != null
+     * @post ret.equals(name)
+     */
+    public static String name(String name) {
+        assert name != null : "precondition violated";
+
+        String canonical = NAMES.putIfAbsent(name, name);
+        return canonical != null ? canonical : name;
+    }
+
+    /**
+     * Give the number of canonical fruits
+     *
+     * @return the number of distinct fruits interned so far
+     */
+    public static int getFruitCount() {
+        return FRUITS.size();
+    }
+
+    /**
+     * Give the number of canonical names
+     *
+     * @return the number of distinct names interned so far
+     */
+    public static int getNameCount() {
+        return NAMES.size();
+    }
+}
@@ -15,10 +15,21 @@ public interface Level {
      * Give the elements of this level (pacman and fruits), at their initial
      * locations
      *
-     * @return the initial elements of this level
+     * @return the initial elements of this level, in the order of the level
+     * file
      */
     Collection<Element> getElements();
 
+    /**
+     * Give the elements of this level in primitive arrays
+     *
+     * @return the table of the elements, in the order of {@link #getElements()}
+     * @post ret != null
+     */
+    default ElementTable getElementTable() {
+        return new ElementTable(getElements());
+    }
+
     /**
      * Give the number of rows/columns in the game board of this level
      *
@@ -38,6 +49,43 @@ public interface Level {
      */
     boolean isWall(int x, int y);
 
+    /**
+     * Give the number of 64 bits words needed to represent a row of walls,
+     * see {@link #getWallRow(int, int)}
+     *
+     * @return the number of words of a row of walls
+     */
+    default int getWallRowWords() {
+        return (getSize() + 63) >>> 6;
+    }
+
+    /**
+     * Give 64 consecutive cells of a row of the board as a bit set: the bit i
+     * of the result is set if the cell (word * 64 + i, y) is a wall. The bits
+     * beyond the end of the row are set, as if the board was surrounded by
+     * walls. When the board has at most 64 columns, getWallRow(y, 0) is the
+     * whole row.
+     *
+     * @param y    the row index
+     * @param word the index of the word in the row
+     *
+     * @return the walls of the given cells
+     *
+     * @pre y >= 0 && y < getSize() && word >= 0 && word < getWallRowWords()
+     */
+    default long getWallRow(int y, int word) {
+        assert y >= 0 && y < getSize() && word >= 0 && word < getWallRowWords() : "precondition violated";
+
+        long bits = 0;
+        for (int i = 0; i < 64; i++) {
+            int x = (word << 6) + i;
+            if (x >= getSize() || isWall(x, y)) {
+                bits |= 1L << i;
+            }
+        }
+        return bits;
+    }
+
     /**
      * Give the fruit in the cell at the given location
      *
@@ -50,10 +98,96 @@ public interface Level {
      */
     Fruit getFruit(int x, int y);
 
+    /**
+     * Give the index, in the fruits table of this level, of the fruit in the
+     * cell at the given location
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     *
+     * @return the index of the fruit at the given location, -1 if the cell has
+     *         no fruit
+     *
+     * @pre x >= 0 && x < getSize() && x >= 0 && y < getSize()
+     * @post ret >= -1 && ret < getFruitCount()
+     */
+    int getFruitIndex(int x, int y);
+
+    /**
+     * Give the value of the fruit in the cell at the given location
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     *
+     * @return the value of the fruit at the given location, 0 if the cell has
+     *         no fruit
+     *
+     * @pre x >= 0 && x < getSize() && x >= 0 && y < getSize()
+     */
+    default int getFruitValue(int x, int y) {
+        int index = getFruitIndex(x, y);
+        return index < 0 ? 0 : getFruitByIndex(index).getValue();
+    }
+
+    /**
+     * Give the number of fruits in the fruits table of this level
+     *
+     * @return the number of fruits
+     */
+    int getFruitCount();
+
+    /**
+     * Give a fruit of the fruits table of this level
+     *
+     * @param index the index of the fruit in the table
+     *
+     * @return the fruit
+     *
+     * @pre index >= 0 && index < getFruitCount()
+     * @post ret != null
+     */
+    Fruit getFruitByIndex(int index);
+
     /**
      * Give the level properties
      *
      * @return the level properties
      */
     Properties getProperties();
+
+    /**
+     * Give the navigation graph of the board: the moves from each cell, the
+     * junctions and the corridors between them
+     *
+     * @return the navigation graph, shared by the levels that have the same
+     * walls
+     * @throws IllegalArgumentException if the board has more than
+     *                                  {@link NavigationGraph#MAX_SIZE}
+     *                                  rows/columns
+     * @post ret != null && ret.getSize() == getSize()
+     */
+    default NavigationGraph getNavigationGraph() {
+        return NavigationGraph.of(this);
+    }
+
+    /**
+     * Give the typed settings of the level, parsed from its properties
+     *
+     * @return the settings (the default value for an invalid property)
+     * @post ret != null
+     */
+    default LevelSettings getSettings() {
+        return LevelSettings.of(getProperties());
+    }
+
+    /**
+     * Give the fingerprint of the content of this level: the board, the
+     * elements, the fruits and the properties
+     *
+     * @return the hash, equal for the levels that have the same content
+     * @post ret != null
+     */
+    default ContentHash getContentHash() {
+        return ContentHash.of(this);
+    }
 }
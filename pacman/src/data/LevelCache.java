@@ -0,0 +1,365 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.ParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the levels loaded from files. A cached level is identified by
+ * the path of its file, the file modification time and the file size: a file
+ * that has changed is loaded again. The cache holds at most a given amount of
+ * memory (as estimated by {@link #weight(Level)}); when it is full, the least
+ * recently used levels are evicted.
+ * <p>
+ * The cached levels are {@link UnmodifiableLevel unmodifiable views}, so that
+ * they can be shared between several games. This class is thread-safe, the
+ * levels are loaded outside the lock of the cache.
+ *
+ * @author Leia
+ * @inv getWeight() >= 0 && getWeight() <= getMaxWeight()
+ */
+public class LevelCache {
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the maximum weight (in bytes) of the cached levels
+     */
+    private final long maxWeight;
+
+    /**
+     * the cached levels, by file path, from the least to the most recently
+     * used
+     */
+    private final Map<String, Entry> entries;
+
+    /**
+     * the current weight (in bytes) of the cached levels
+     */
+    private long weight;
+
+    /**
+     * the number of levels found in the cache
+     */
+    private long hits;
+
+    /**
+     * the number of levels not found in the cache (or found but out of date)
+     */
+    private long misses;
+
+    /**
+     * the number of levels evicted to respect the maximum weight
+     */
+    private long evictions;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param maxWeight the maximum weight (in bytes) of the cached levels
+     * @pre maxWeight >= 0
+     */
+    public LevelCache(long maxWeight) {
+        assert maxWeight >= 0 : "precondition violated";
+
+        this.maxWeight = maxWeight;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        invariant();
+    }
+
+    //--------------------------------------------------------------
+    // Public methods
+    //--------------------------------------------------------------
+
+    /**
+     * Give the level of the given file, from the cache if the file has not
+     * changed since it was cached, else loaded with the given loader
+     *
+     * @param file   the file that contains the level description
+     * @param loader the loader used if the level is not in the cache (only
+     *               used by the calling thread)
+     * @return an unmodifiable view of the level
+     * @throws IOException    if an error occurs while reading the file
+     * @throws ParseException if a line format is not valid
+     * @pre file != null && loader != null
+     * @post ret != null
+     */
+    public Level get(File file, LevelLoader loader) throws IOException, ParseException {
+        assert file != null && loader != null : "precondition violated";
+
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        return get(file, attributes.lastModifiedTime().toMillis(), attributes.size(), loader);
+    }
+
+    /**
+     * Give the level of the given indexed file, from the cache if the file
+     * has not changed since it was cached, else loaded with the given loader.
+     * The attributes of the file are taken from the index instead of the file
+     * system.
+     *
+     * @param entry  the indexed file that contains the level description
+     * @param loader the loader used if the level is not in the cache (only
+     *               used by the calling thread)
+     * @return an unmodifiable view of the level
+     * @throws IOException    if an error occurs while reading the file
+     * @throws ParseException if a line format is not valid
+     * @pre entry != null && loader != null
+     * @post ret != null
+     */
+    public Level get(LevelIndex.Entry entry, LevelLoader loader) throws IOException, ParseException {
+        assert entry != null && loader != null : "precondition violated";
+
+        return get(entry.getFile(), entry.getLastModified(), entry.getLength(), loader);
+    }
+
+    /**
+     * Remove the level of the given file from the cache
+     *
+     * @param file the file that contains the level description
+     */
+    public synchronized void invalidate(File file) {
+        Entry entry = entries.remove(file.getAbsolutePath());
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+
+        invariant();
+    }
+
+    /**
+     * Remove all the levels from the cache
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+
+        invariant();
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the maximum weight of the cached levels
+     *
+     * @return the maximum weight (in bytes)
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Give the current weight of the cached levels
+     *
+     * @return the weight (in bytes)
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Give the number of cached levels
+     *
+     * @return the number of levels
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Give the number of levels found in the cache
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Give the number of levels that were not found in the cache, or that were
+     * found but whose file has changed
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Give the number of levels evicted to respect the maximum weight
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    //--------------------------------------------------------------
+    // toString
+    //--------------------------------------------------------------
+
+    @Override
+    public synchronized String toString() {
+        return "levels=" + entries.size() + " weight=" + weight + "/" + maxWeight
+                + " hits=" + hits + " misses=" + misses + " evictions=" + evictions;
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Give the level of the given file, from the cache if the file has not
+     * changed since it was cached, else loaded with the given loader
+     *
+     * @param file     the file that contains the level description
+     * @param modified the modification time of the file
+     * @param size     the size of the file
+     * @param loader   the loader used if the level is not in the cache
+     * @return an unmodifiable view of the level
+     * @throws IOException    if an error occurs while reading the file
+     * @throws ParseException if a line format is not valid
+     */
+    private Level get(File file, long modified, long size, LevelLoader loader) throws IOException, ParseException {
+        String path = file.getAbsolutePath();
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry != null && entry.modified == modified && entry.size == size) {
+                hits++;
+                return entry.level;
+            }
+            misses++;
+        }
+
+        Level loaded = loader.load(file);
+        Level level = UnmodifiableLevel.of(loaded);
+        put(path, new Entry(level, modified, size, weight(loaded))); // the loaded level, not its view, tells where the cells are
+        return level;
+    }
+
+    /**
+     * Add a level to the cache, then evict the least recently used levels
+     * until the maximum weight is respected. A level heavier than the maximum
+     * weight is not cached.
+     *
+     * @param path  the path of the level file
+     * @param entry the cached level
+     */
+    private synchronized void put(String path, Entry entry) {
+        if (entry.weight > maxWeight) {
+            return;
+        }
+
+        Entry previous = entries.put(path, entry);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entry.weight;
+
+        Iterator<Entry> it = entries.values().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            weight -= eldest.weight;
+            evictions++;
+        }
+
+        invariant();
+    }
+
+    /**
+     * Estimate the memory used by a level
+     *
+     * @param level the level, as loaded (an unmodifiable view hides where its
+     *              cells are stored)
+     * @return the estimated weight (in bytes), without the navigation graph,
+     * that is weighed by the cache of the graphs
+     */
+    static long weight(Level level) {
+        long size = level.getSize();
+        return 256                                           // the level itself and its arrays headers
+                + cellsWeight(level)                         // the cells codes, if they are in the heap
+                + size * level.getWallRowWords() * 8         // the walls
+                + level.getFruitCount() * 64L                // the fruits
+                + level.getElements().size() * 64L           // the elements
+                + level.getProperties().size() * 128L;       // the properties
+    }
+
+    /**
+     * Estimate the memory used by the cells codes of a level in the heap
+     *
+     * @param level the level
+     * @return the estimated weight (in bytes)
+     */
+    private static long cellsWeight(Level level) {
+        if (level instanceof OffHeapLevel) {
+            return 0;
+        }
+        return (long) level.getSize() * level.getSize();
+    }
+
+    /**
+     * Check the class invariants
+     */
+    private void invariant() {
+        assert weight >= 0 && weight <= maxWeight : "Invariant violated";
+    }
+
+    //--------------------------------------------------------------
+    // Inner class
+    //--------------------------------------------------------------
+
+    /**
+     * A cached level
+     */
+    private static class Entry {
+
+        /**
+         * the level
+         */
+        private final Level level;
+
+        /**
+         * the modification time of the level file
+         */
+        private final long modified;
+
+        /**
+         * the size of the level file
+         */
+        private final long size;
+
+        /**
+         * the estimated memory used by the level
+         */
+        private final long weight;
+
+        /**
+         * Constructor
+         *
+         * @param level    the level
+         * @param modified the modification time of the level file
+         * @param size     the size of the level file
+         * @param weight   the estimated memory used by the level
+         */
+        Entry(Level level, long modified, long size, long weight) {
+            this.level = level;
+            this.modified = modified;
+            this.size = size;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package data;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParseException;
+
+/**
+ * A compiler of the levels files from the text format to the
+ * {@link BinaryLevelFormat binary format}. Each file "levelN" of the given
+ * directory is compiled to the file "levelN.bin" in the same directory, which
+ * is then preferred by {@link GameImpl}.
+ *
+ * @author Leia
+ */
+public class LevelCompiler {
+
+    /**
+     * Private constructor: this class is only used through its main method
+     */
+    private LevelCompiler() {
+    }
+
+    private static void usage() {
+        System.out.println("Usage: java data.LevelCompiler levels_directory");
+        System.exit(-1);
+    }
+
+    /**
+     * Compile the levels files of a directory
+     *
+     * @param args command line arguments (the levels directory name)
+     */
+    public static void main(String[] args) {
+        if (args.length != 1 || !new File(args[0]).isDirectory()) {
+            usage();
+        }
+
+        File directory = new File(args[0]);
+        LevelLoader loader = new LevelLoader();
+        boolean failed = false;
+        for (int n = 1; new File(directory, "level" + n).isFile(); n++) {
+            File source = new File(directory, "level" + n);
+            File target = new File(directory, "level" + n + BinaryLevelFormat.SUFFIX);
+            try {
+                compile(loader, source, target);
+                System.out.println(source + " -> " + target);
+            } catch (IOException | ParseException e) {
+                System.err.println("Error while compiling the level " + n + ": " + e.getMessage());
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compile a level file
+     *
+     * @param loader the loader used to read the text file
+     * @param source the level file in the text format
+     * @param target the level file to write in the binary format
+     * @throws IOException    if an error occurs while reading or writing
+     * @throws ParseException if a line format of the source is not valid
+     */
+    public static void compile(LevelLoader loader, File source, File target) throws IOException, ParseException {
+        Level level = loader.load(source);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+            BinaryLevelFormat.write(level, out);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package data;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeSet;
+
+/**
+ * An exporter of levels in the text format read by the {@link LevelLoader},
+ * in the {@link BinaryLevelFormat binary format} or in JSON. The levels of a
+ * pack are written one after the other as they are given: a level is written
+ * row by row, then dropped, so that packs of large boards are exported with
+ * bounded memory. The game whose levels are exported is not modified (see
+ * {@link GameImpl#levels()}).
+ * <p>
+ * In a pack, the text levels are preceded by a line "# Level N", the binary
+ * levels are concatenated (each one gives its length in its header) and the
+ * JSON levels are the items of an array.
+ *
+ * @author Leia
+ */
+public final class LevelExporter {
+
+    //--------------------------------------------------------------
+    // Inner enum
+    //--------------------------------------------------------------
+
+    /**
+     * The export formats
+     */
+    public enum Format {
+        TEXT, BINARY, JSON
+    }
+
+    //--------------------------------------------------------------
+    // Attribute
+    //--------------------------------------------------------------
+
+    /**
+     * the format of the exported levels
+     */
+    private final Format format;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param format the format of the exported levels
+     * @pre format != null
+     */
+    public LevelExporter(Format format) {
+        assert format != null : "precondition violated";
+
+        this.format = format;
+    }
+
+    //--------------------------------------------------------------
+    // Public methods
+    //--------------------------------------------------------------
+
+    /**
+     * Export the levels of a directory. The levels are loaded one at a time
+     * and written to the standard output.
+     *
+     * @param args command line arguments (the format, text, binary or json,
+     *             and the levels directory name)
+     */
+    public static void main(String[] args) {
+        Format format = null;
+        if (args.length == 2) {
+            for (Format candidate : Format.values()) {
+                if (candidate.name().equalsIgnoreCase(args[0])) {
+                    format = candidate;
+                }
+            }
+        }
+        if (format == null || !new File(args[1]).isDirectory()) {
+            System.out.println("Usage: java data.LevelExporter text|binary|json levels_directory");
+            System.exit(-1);
+        }
+
+        try (GameImpl game = new GameImpl(new File(args[1]))) {
+            new LevelExporter(format).export(game.levels(), System.out);
+        } catch (IOException e) {
+            System.err.println("Error while exporting the levels: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Export levels to an output stream. The text and JSON formats are
+     * encoded in UTF-8.
+     *
+     * @param levels the levels, iterated once
+     * @param out    the output stream, not closed
+     * @return the number of exported levels
+     * @throws IOException if an error occurs while writing
+     * @pre levels != null && out != null
+     */
+    public int export(Iterable<Level> levels, OutputStream out) throws IOException {
+        assert levels != null && out != null : "precondition violated";
+
+        if (format == Format.BINARY) {
+            BufferedOutputStream output = new BufferedOutputStream(out);
+            int count = 0;
+            for (Level level : levels) {
+                BinaryLevelFormat.write(level, output);
+                count++;
+            }
+            output.flush();
+            return count;
+        }
+        return export(levels, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Export levels to a writer, in the text or JSON format
+     *
+     * @param levels the levels, iterated once
+     * @param out    the writer, not closed
+     * @return the number of exported levels
+     * @throws IOException if an error occurs while writing
+     * @pre levels != null && out != null && format != Format.BINARY
+     */
+    public int export(Iterable<Level> levels, Writer out) throws IOException {
+        assert levels != null && out != null && format != Format.BINARY : "precondition violated";
+
+        Writer output = new BufferedWriter(out);
+        int count = 0;
+        if (format == Format.JSON) {
+            output.write("[");
+        }
+        for (Level level : levels) {
+            count++;
+            if (format == Format.JSON) {
+                output.write(count == 1 ? "\n" : ",\n");
+            } else {
+                output.write((count == 1 ? "" : "\n") + "# Level " + count + "\n");
+            }
+            write(level, output);
+        }
+        if (format == Format.JSON) {
+            output.write("\n]\n");
+        }
+        output.flush();
+        return count;
+    }
+
+    /**
+     * Export a level to an output stream. The text and JSON formats are
+     * encoded in UTF-8.
+     *
+     * @param level the level
+     * @param out   the output stream, not closed
+     * @throws IOException if an error occurs while writing
+     * @pre level != null && out != null
+     */
+    public void write(Level level, OutputStream out) throws IOException {
+        assert level != null && out != null : "precondition violated";
+
+        if (format == Format.BINARY) {
+            BinaryLevelFormat.write(level, out);
+        } else {
+            Writer output = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            write(level, output);
+            output.flush();
+        }
+    }
+
+    /**
+     * Export a level to a writer, in the text or JSON format
+     *
+     * @param level the level
+     * @param out   the writer, not closed
+     * @throws IOException if an error occurs while writing
+     * @pre level != null && out != null && format != Format.BINARY
+     */
+    public void write(Level level, Writer out) throws IOException {
+        assert level != null && out != null && format != Format.BINARY : "precondition violated";
+
+        if (format == Format.TEXT) {
+            LevelTextWriter.write(level, out);
+        } else {
+            writeJson(level, out);
+        }
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Write a level as a JSON object. The board is an array of rows, with the
+     * keys of the text format.
+     *
+     * @param level the level
+     * @param out   the writer
+     * @throws IOException if an error occurs while writing
+     */
+    private static void writeJson(Level level, Writer out) throws IOException {
+        int size = level.getSize();
+        char[] keys = new char[level.getFruitCount()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = level.getFruitByIndex(i).getKey();
+        }
+        char empty = LevelTextWriter.emptyKey(keys);
+
+        // the board
+        out.write("{\"hash\":\"" + level.getContentHash() + "\",\"size\":" + size + ",\"board\":[");
+        StringBuilder row = new StringBuilder(size + 8);
+        for (int y = 0; y < size; y++) {
+            row.setLength(0);
+            for (int x = 0; x < size; x++) {
+                int fruit = level.getFruitIndex(x, y);
+                row.append(level.isWall(x, y) ? 'w' : fruit >= 0 ? keys[fruit] : empty);
+            }
+            out.write(y == 0 ? "\n  " : ",\n  ");
+            writeString(row, out);
+        }
+
+        // the elements
+        out.write("],\n \"elements\":[");
+        ElementTable elements = level.getElementTable();
+        String separator = "";
+        if (elements.hasPacman()) {
+            out.write("{\"name\":\"pacman\",\"x\":" + elements.getPacmanX() + ",\"y\":" + elements.getPacmanY() + "}");
+            separator = ",";
+        }
+        for (int i = 0; i < elements.getGhostCount(); i++) {
+            out.write(separator + "{\"name\":");
+            writeString(elements.getGhostName(i), out);
+            out.write(",\"x\":" + elements.getGhostX(i) + ",\"y\":" + elements.getGhostY(i) + "}");
+            separator = ",";
+        }
+
+        // the fruits
+        out.write("],\n \"fruits\":[");
+        for (int i = 0; i < level.getFruitCount(); i++) {
+            Fruit fruit = level.getFruitByIndex(i);
+            out.write(i == 0 ? "{\"key\":" : ",{\"key\":");
+            writeString(String.valueOf(fruit.getKey()), out);
+            out.write(",\"name\":");
+            writeString(fruit.getName(), out);
+            out.write(",\"value\":" + fruit.getValue() + "}");
+        }
+
+        // the properties
+        out.write("],\n \"properties\":{");
+        separator = "";
+        for (String name : new TreeSet<>(level.getProperties().stringPropertyNames())) {
+            out.write(separator);
+            writeString(name, out);
+            out.write(":");
+            writeString(level.getProperties().getProperty(name), out);
+            separator = ",";
+        }
+        out.write("}}");
+    }
+
+    /**
+     * Write a JSON string
+     *
+     * @param value the string value
+     * @param out   the writer
+     * @throws IOException if an error occurs while writing
+     */
+    private static void writeString(CharSequence value, Writer out) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
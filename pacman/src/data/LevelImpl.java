@@ -1,9 +1,6 @@
 package data;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-import java.util.Properties;
+import java.util.*;
 
 /**
  * An implementation of the {@link Level} interface
@@ -23,22 +20,61 @@ public class LevelImpl implements Level {
     private final Collection<Element> elements;
 
     /**
-     * the lines that represent the board rows
+     * the elements of this level in primitive arrays
      */
-    private final List<String> board;
+    private final ElementTable elementTable;
 
     /**
-     * the fruits map (key,fruit)
+     * the number of rows/columns of the board
      */
-    private final Map<Character, Fruit> fruits;
+    private final int size;
+
+    /**
+     * the walls of the board: one bit per cell, each row is stored in
+     * wallRowWords consecutive words (see {@link Level#getWallRow(int, int)})
+     */
+    private final long[] walls;
+
+    /**
+     * the number of words of a row of walls
+     */
+    private final int wallRowWords;
+
+    /**
+     * the fruits layer of the board: the {@link CellCode} of each cell, row by
+     * row
+     */
+    private final byte[] cells;
+
+    /**
+     * the fruits table, indexed by the codes of the cells
+     */
+    private final Fruit[] fruitTable;
 
     /**
      * the level properties
      */
     private final Properties properties;
 
+    /**
+     * the typed settings, parsed from the properties when the level is built
+     */
+    private final LevelSettings settings;
+
+    /**
+     * the navigation graph of the board, computed on the first request (null
+     * until then)
+     */
+    private volatile NavigationGraph navigationGraph;
+
+    /**
+     * the hash of the content, computed on the first request (null until
+     * then; the later changes of the properties are not followed)
+     */
+    private volatile ContentHash contentHash;
+
     //--------------------------------------------------------------
-    // Constructor
+    // Constructors
     //--------------------------------------------------------------
 
     /**
@@ -46,21 +82,46 @@ public class LevelImpl implements Level {
      *
      * @param elements   the elements of this level
      * @param board      the lines that represent the board rows
-     * @param fruits     the fruits map (key,fruit)
+     * @param fruits     the fruits map (key,fruit), its iteration order gives
+     *                   the order of the fruits table
      * @param properties the level properties
      * @pre elements != null && board != null && fruits != null && properties != null
      * @pre forAll (line : board | line.length() == board.size())
+     * @pre fruits.size() <= CellCode.MAX_FRUITS
      */
     public LevelImpl(Collection<Element> elements, List<String> board, Map<Character, Fruit> fruits, Properties properties) {
-        assert elements != null && board != null && fruits != null && properties != null : "precondition violated";
-        for (String line : board) {
-            assert line.length() == board.size() : "precondition violated";
+        this(elements, board.size(), makeCells(board, fruits), fruits.values().toArray(new Fruit[0]), properties);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param elements   the elements of this level
+     * @param size       the number of rows/columns of the board
+     * @param cells      the {@link CellCode} of each cell, row by row (the
+     *                   array is not copied)
+     * @param fruitTable the fruits table, indexed by the codes of the cells
+     * @param properties the level properties
+     * @pre elements != null && cells != null && fruitTable != null && properties != null
+     * @pre size >= 0 && cells.length == size * size
+     * @pre forAll (code : cells | CellCode.fruitIndex(code) < fruitTable.length)
+     */
+    public LevelImpl(Collection<Element> elements, int size, byte[] cells, Fruit[] fruitTable, Properties properties) {
+        assert elements != null && cells != null && fruitTable != null && properties != null : "precondition violated";
+        assert size >= 0 && cells.length == size * size : "precondition violated";
+        for (byte code : cells) {
+            assert CellCode.fruitIndex(code) < fruitTable.length : "precondition violated";
         }
 
         this.elements = elements;
-        this.board = board;
-        this.fruits = fruits;
+        this.elementTable = new ElementTable(elements);
+        this.size = size;
+        this.cells = cells;
+        this.fruitTable = fruitTable;
         this.properties = properties;
+        this.settings = LevelSettings.of(properties);
+        this.wallRowWords = (size + 63) >>> 6;
+        this.walls = makeWalls(size, cells, wallRowWords);
 
         invariant();
     }
@@ -75,21 +136,61 @@ public class LevelImpl implements Level {
 
     @Override
     public int getSize() {
-        return board.size();
+        return size;
     }
 
     @Override
     public boolean isWall(int x, int y) {
         assert x >= 0 && x < getSize() && x >= 0 && y < getSize() : "precondition violated";
 
-        return board.get(y).charAt(x) == 'w';
+        return (walls[y * wallRowWords + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    @Override
+    public int getWallRowWords() {
+        return wallRowWords;
+    }
+
+    @Override
+    public long getWallRow(int y, int word) {
+        assert y >= 0 && y < getSize() && word >= 0 && word < getWallRowWords() : "precondition violated";
+
+        return walls[y * wallRowWords + word];
     }
 
     @Override
     public Fruit getFruit(int x, int y) {
         assert x >= 0 && x < getSize() && x >= 0 && y < getSize() : "precondition violated";
 
-        return fruits.get(board.get(y).charAt(x));
+        int index = CellCode.fruitIndex(cells[y * size + x]);
+        return index < 0 ? null : fruitTable[index];
+    }
+
+    @Override
+    public int getFruitIndex(int x, int y) {
+        assert x >= 0 && x < getSize() && x >= 0 && y < getSize() : "precondition violated";
+
+        return CellCode.fruitIndex(cells[y * size + x]);
+    }
+
+    @Override
+    public int getFruitValue(int x, int y) {
+        assert x >= 0 && x < getSize() && x >= 0 && y < getSize() : "precondition violated";
+
+        int index = CellCode.fruitIndex(cells[y * size + x]);
+        return index < 0 ? 0 : fruitTable[index].getValue();
+    }
+
+    @Override
+    public int getFruitCount() {
+        return fruitTable.length;
+    }
+
+    @Override
+    public Fruit getFruitByIndex(int index) {
+        assert index >= 0 && index < getFruitCount() : "precondition violated";
+
+        return fruitTable[index];
     }
 
     @Override
@@ -97,10 +198,108 @@ public class LevelImpl implements Level {
         return properties;
     }
 
+    @Override
+    public ElementTable getElementTable() {
+        return elementTable;
+    }
+
+    @Override
+    public LevelSettings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public NavigationGraph getNavigationGraph() {
+        NavigationGraph graph = navigationGraph;
+        if (graph == null) {
+            // the levels that are only exported or hashed have no graph
+            graph = navigationGraph = NavigationGraph.of(this);
+        }
+        return graph;
+    }
+
+    @Override
+    public ContentHash getContentHash() {
+        ContentHash hash = contentHash;
+        if (hash == null) {
+            // the board is only read if the hash is used
+            hash = contentHash = ContentHash.of(this);
+        }
+        return hash;
+    }
+
     //--------------------------------------------------------------
-    // Private method
+    // Private methods
     //--------------------------------------------------------------
 
+    /**
+     * Make the codes of the cells of the given board. The fruits are numbered
+     * in the iteration order of the map.
+     *
+     * @param board  the lines that represent the board rows
+     * @param fruits the fruits map (key,fruit)
+     * @return the code of each cell, row by row
+     * @pre fruits.size() <= CellCode.MAX_FRUITS
+     */
+    private static byte[] makeCells(List<String> board, Map<Character, Fruit> fruits) {
+        assert fruits.size() <= CellCode.MAX_FRUITS : "precondition violated";
+
+        // the code of each key (the keys are chars, so a direct table is used
+        // for the ASCII ones)
+        byte[] ascii = new byte[128];
+        Arrays.fill(ascii, CellCode.EMPTY);
+        ascii['w'] = CellCode.WALL;
+        Map<Character, Byte> others = new HashMap<>();
+        int index = 0;
+        for (Character key : fruits.keySet()) {
+            byte code = key == 'w' ? CellCode.WALL : CellCode.ofFruit(index);
+            if (key < ascii.length) {
+                ascii[key] = code;
+            } else {
+                others.put(key, code);
+            }
+            index++;
+        }
+
+        int size = board.size();
+        byte[] cells = new byte[size * size];
+        for (int y = 0; y < size; y++) {
+            String line = board.get(y);
+            assert line.length() == size : "precondition violated";
+            for (int x = 0; x < size; x++) {
+                char key = line.charAt(x);
+                if (key < ascii.length) {
+                    cells[y * size + x] = ascii[key];
+                } else {
+                    Byte code = others.get(key);
+                    cells[y * size + x] = code != null ? code : CellCode.EMPTY;
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Make the bit set of the walls of the given board. The bits beyond the
+     * end of each row are set.
+     *
+     * @param size         the number of rows/columns of the board
+     * @param cells        the code of each cell, row by row
+     * @param wallRowWords the number of words of a row of walls
+     * @return the walls, row by row
+     */
+    private static long[] makeWalls(int size, byte[] cells, int wallRowWords) {
+        long[] walls = new long[size * wallRowWords];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < wallRowWords << 6; x++) {
+                if (x >= size || cells[y * size + x] == CellCode.WALL) {
+                    walls[y * wallRowWords + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return walls;
+    }
+
     /**
      * Check the class invariants
      */
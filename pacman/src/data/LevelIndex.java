@@ -0,0 +1,396 @@
+package data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An index of the levels files of a directory: the files named "levelN" and
+ * "levelN.bin" (preferred when it is not older, see {@link GameImpl}). The
+ * directory is listed once at construction; then, if the index watches the
+ * directory, it is kept up to date by a {@link WatchService} and the
+ * listeners are notified of the levels files that change. The queries never
+ * access the file system.
+ * <p>
+ * This class is thread-safe. The watching thread is a daemon thread, stopped
+ * by {@link #close()}.
+ *
+ * @author Leia
+ */
+public class LevelIndex implements Closeable {
+
+    //--------------------------------------------------------------
+    // Inner types
+    //--------------------------------------------------------------
+
+    /**
+     * A listener notified when a level file changes
+     */
+    public interface Listener {
+
+        /**
+         * Called (by the watching thread) when a file of a level has been
+         * created, modified or deleted
+         *
+         * @param number the level number
+         * @param file   the file that has changed
+         */
+        void levelChanged(int number, File file);
+    }
+
+    /**
+     * The indexed file of a level: the file to load and its attributes when
+     * it was indexed
+     */
+    public static final class Entry {
+
+        /**
+         * the file to load
+         */
+        private final File file;
+
+        /**
+         * the modification time of the file
+         */
+        private final long lastModified;
+
+        /**
+         * the size of the file
+         */
+        private final long length;
+
+        /**
+         * Constructor
+         *
+         * @param file         the file to load
+         * @param lastModified the modification time of the file
+         * @param length       the size of the file
+         */
+        private Entry(File file, long lastModified, long length) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * Give the file to load
+         *
+         * @return the binary file if it is present and up to date, else the
+         * text file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Give the modification time of the file
+         *
+         * @return the modification time (in ms)
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Give the size of the file
+         *
+         * @return the size (in bytes)
+         */
+        public long getLength() {
+            return length;
+        }
+    }
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the prefix of the levels files names
+     */
+    private static final String PREFIX = "level";
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the indexed directory
+     */
+    private final File directory;
+
+    /**
+     * the levels files, by level number
+     */
+    private final Map<Integer, Entry> entries;
+
+    /**
+     * the listeners notified when a level file changes
+     */
+    private final List<Listener> listeners;
+
+    /**
+     * the watch service of the directory (null if the directory is not
+     * watched)
+     */
+    private final WatchService watcher;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor. If the directory cannot be watched, an error is printed
+     * and the index is not kept up to date.
+     *
+     * @param directory the directory that contains the levels files
+     * @param watch     true if the index should be kept up to date
+     * @pre directory.isDirectory()
+     */
+    public LevelIndex(File directory, boolean watch) {
+        assert directory.isDirectory() : "precondition violated";
+
+        this.directory = directory;
+        this.entries = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.watcher = watch ? startWatching() : null;
+        scan();
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Check whether the given level exists
+     *
+     * @param number the level number
+     * @return true if the text file or the binary file of the level exists
+     */
+    public boolean hasLevel(int number) {
+        return entries.containsKey(number);
+    }
+
+    /**
+     * Give the indexed file of the given level
+     *
+     * @param number the level number
+     * @return the file to load and its attributes, null if the level does not
+     * exist
+     */
+    public Entry getEntry(int number) {
+        return entries.get(number);
+    }
+
+    /**
+     * Give the numbers of the existing levels
+     *
+     * @return the levels numbers, in increasing order
+     */
+    public int[] getLevelNumbers() {
+        int[] numbers = new int[entries.size()];
+        int count = 0;
+        for (int number : entries.keySet()) {
+            if (count == numbers.length) {
+                numbers = Arrays.copyOf(numbers, count * 2 + 1); // the index has grown meanwhile
+            }
+            numbers[count++] = number;
+        }
+        numbers = Arrays.copyOf(numbers, count);
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    //--------------------------------------------------------------
+    // Setters
+    //--------------------------------------------------------------
+
+    /**
+     * Add a listener notified when a level file changes
+     *
+     * @param listener the listener
+     * @pre listener != null
+     */
+    public void addListener(Listener listener) {
+        assert listener != null : "precondition violated";
+
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop watching the directory
+     */
+    @Override
+    public void close() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                System.err.println("Error while closing the watch service of " + directory + ": " + e.getMessage());
+            }
+        }
+    }
+
+    //--------------------------------------------------------------
+    // Package method
+    //--------------------------------------------------------------
+
+    /**
+     * Give the level number of a file name in the form "levelN" or
+     * "levelN.bin"
+     *
+     * @param name the file name
+     * @return the level number, -1 if the name is not a level file name
+     */
+    static int levelNumber(String name) {
+        int end = name.endsWith(BinaryLevelFormat.SUFFIX) ? name.length() - BinaryLevelFormat.SUFFIX.length() : name.length();
+        if (!name.startsWith(PREFIX) || end <= PREFIX.length() || end - PREFIX.length() > 9) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = PREFIX.length(); i < end; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + c - '0';
+        }
+        return number > 0 ? number : -1;
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * List the directory and index all the levels files again, so that the
+     * levels already indexed get the current attributes of their files
+     */
+    private void scan() {
+        String[] names = directory.list();
+        if (names == null) {
+            System.err.println("Error while listing the directory " + directory);
+            return;
+        }
+        Set<Integer> numbers = new HashSet<>();
+        for (String name : names) {
+            int number = levelNumber(name);
+            if (number > 0 && numbers.add(number)) {
+                refresh(number);
+            }
+        }
+        for (int number : entries.keySet()) {
+            if (!new File(directory, PREFIX + number).exists() && !new File(directory, PREFIX + number + BinaryLevelFormat.SUFFIX).exists()) {
+                entries.remove(number);
+            }
+        }
+    }
+
+    /**
+     * Index again the files of the given level
+     *
+     * @param number the level number
+     */
+    private void refresh(int number) {
+        Entry text = entry(new File(directory, PREFIX + number));
+        Entry binary = entry(new File(directory, PREFIX + number + BinaryLevelFormat.SUFFIX));
+        Entry entry = binary != null && (text == null || binary.lastModified >= text.lastModified) ? binary : text;
+        if (entry != null) {
+            entries.put(number, entry);
+        } else {
+            entries.remove(number);
+        }
+    }
+
+    /**
+     * Read the attributes of a file
+     *
+     * @param file the file
+     * @return the entry of the file, null if it is not a regular file
+     */
+    private static Entry entry(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return attributes.isRegularFile() ? new Entry(file, attributes.lastModifiedTime().toMillis(), attributes.size()) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Register the directory in a new watch service and start the watching
+     * thread
+     *
+     * @return the watch service, null if the directory cannot be watched
+     */
+    private WatchService startWatching() {
+        try {
+            WatchService service = directory.toPath().getFileSystem().newWatchService();
+            directory.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Thread thread = new Thread(() -> watch(service), "level-index-" + directory.getName());
+            thread.setDaemon(true);
+            thread.start();
+            return service;
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Error while watching the directory " + directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Process the events of the watch service until it is closed
+     *
+     * @param service the watch service
+     */
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // events were lost, the whole directory is indexed again
+                        scan();
+                        for (Map.Entry<Integer, Entry> entry : entries.entrySet()) {
+                            notifyListeners(entry.getKey(), entry.getValue().getFile());
+                        }
+                    } else {
+                        String name = event.context().toString();
+                        int number = levelNumber(name);
+                        if (number > 0) {
+                            refresh(number);
+                            notifyListeners(number, new File(directory, name));
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("The directory " + directory + " cannot be watched anymore");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the index is closed
+        }
+    }
+
+    /**
+     * Notify the listeners that a level has changed
+     *
+     * @param number the level number
+     * @param file   the file that has changed
+     */
+    private void notifyListeners(int number, File file) {
+        for (Listener listener : listeners) {
+            listener.levelChanged(number, file);
+        }
+    }
+}
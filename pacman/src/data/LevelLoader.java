@@ -0,0 +1,606 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.*;
+
+/**
+ * A loader of the level files in the text format. The file is memory-mapped
+ * and its 4 parts (each one beginning with a description line starting with
+ * #) are parsed directly from the mapped bytes: no line is read as a string
+ * and the tokens are never split. The board rows are streamed into packed
+ * cell codes, tiled for the very large boards (see {@link TiledLevel}), so
+ * the board is never held as text. The content is decoded as UTF-8 whatever the
+ * platform charset. The files in the {@link BinaryLevelFormat binary format}
+ * are recognized and read without parsing; the large ones are mapped as
+ * {@link OffHeapLevel off-heap levels}, their board staying in the file.
+ * <p>
+ * A cell code references a fruit by its index in a byte, so a level has at
+ * most {@link CellCode#MAX_FRUITS} fruits, and its board at most
+ * {@link CellCode#MAX_FRUITS} different keys besides the walls (the keys
+ * without a fruit included): a level beyond these limits is rejected with a
+ * {@link ParseException} that names the limit.
+ * <p>
+ * A loader reuses its internal buffers between two loads, so an instance
+ * should not be shared between threads.
+ *
+ * @author Leia
+ */
+public class LevelLoader {
+
+    //--------------------------------------------------------------
+    // Constant
+    //--------------------------------------------------------------
+
+    /**
+     * the length (in bytes) above which a binary level file is mapped instead
+     * of being copied in the heap
+     */
+    static final long MAPPED_THRESHOLD = (long) BoardBuilder.TILED_THRESHOLD * BoardBuilder.TILED_THRESHOLD;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * a buffer reused to copy the bytes of the token being decoded
+     */
+    private byte[] scratch;
+
+    /**
+     * the decoder used for the tokens that are not pure ASCII
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * a buffer reused to read the files that cannot be memory-mapped
+     */
+    private ByteBuffer content;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     */
+    public LevelLoader() {
+        this.scratch = new byte[64];
+        this.decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    //--------------------------------------------------------------
+    // Public methods
+    //--------------------------------------------------------------
+
+    /**
+     * Load a level from the given file
+     *
+     * @param file the file that contains the level description
+     * @return the level loaded from the file
+     * @throws IOException    if the file cannot be mapped
+     * @throws ParseException if a line format is not valid, or if the level
+     *                        has more than CellCode.MAX_FRUITS fruits or
+     *                        board keys
+     * @post ret != null
+     */
+    public Level load(File file) throws IOException, ParseException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > MAPPED_THRESHOLD && isBinary(channel)) {
+                // the large boards are kept in the file, out of the heap
+                return BinaryLevelFormat.map(channel);
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The file " + file + " is too large to be mapped: " + channel.size() + " bytes");
+            }
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Load a level from the given path. A path of the default file system is
+     * memory-mapped, a path of another file system (for example an entry of a
+     * zip archive) is read directly from its channel.
+     *
+     * @param path the path of the file that contains the level description
+     * @return the level loaded from the file
+     * @throws IOException    if the file cannot be read
+     * @throws ParseException if a line format is not valid, or if the level
+     *                        has more than CellCode.MAX_FRUITS fruits or
+     *                        board keys
+     * @post ret != null
+     */
+    public Level load(Path path) throws IOException, ParseException {
+        if (path.getFileSystem() == FileSystems.getDefault()) {
+            return load(path.toFile());
+        }
+
+        try (SeekableByteChannel channel = Files.newByteChannel(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The file " + path + " is too large to be read: " + channel.size() + " bytes");
+            }
+            int size = (int) channel.size();
+            if (content == null || content.capacity() < size) {
+                content = ByteBuffer.allocate(size);
+            }
+            content.clear().limit(size);
+            while (content.hasRemaining()) {
+                if (channel.read(content) < 0) {
+                    throw new IOException("The file " + path + " is shorter than its size: " + content.position() + " bytes");
+                }
+            }
+            content.flip();
+            return parse(content);
+        }
+    }
+
+    /**
+     * Parse a level from the bytes between the position and the limit of the
+     * given buffer. The buffer position is not modified.
+     *
+     * @param buffer the level description, encoded in UTF-8 or in the binary
+     *               format
+     * @return the parsed level
+     * @throws ParseException if a line format is not valid, or if the level
+     *                        has more than CellCode.MAX_FRUITS fruits or
+     *                        board keys
+     * @pre buffer != null
+     * @post ret != null
+     */
+    public Level parse(ByteBuffer buffer) throws ParseException {
+        assert buffer != null : "precondition violated";
+
+        if (BinaryLevelFormat.matches(buffer)) {
+            return BinaryLevelFormat.read(buffer);
+        }
+
+        Map<Character, Fruit> fruits = new LinkedHashMap<>(); // the fruits map (key,fruit), in the file order
+        Collection<Element> elements = new ArrayList<>(); // the ghosts and pacman, in the file order
+        BoardBuilder board = null; // the board, created when its first row is read
+        int rows = 0; // the number of rows of the board
+        Properties properties = new Properties(); // the properties
+        int part = 0; // the current part number
+
+        int lineCpt = 0; // a counter for the lines numbers
+        int firstBoardLine = 0; // the number of the first line of the board
+        int end = buffer.limit();
+        int start = buffer.position(); // the index of the first byte of the current line
+        while (start < end) {
+            // find the end of the line (\n, \r or \r\n)
+            int stop = start;
+            while (stop < end && buffer.get(stop) != '\n' && buffer.get(stop) != '\r') {
+                stop++;
+            }
+            lineCpt++;
+
+            int from = trimStart(buffer, start, stop);
+            int to = trimEnd(buffer, from, stop);
+            if (from < to) {
+                if (buffer.get(start) == '#') {
+                    // the description of a new part (starting with #)
+                    part++;
+                    if (part == 1) {
+                        firstBoardLine = lineCpt;
+                    }
+                } else {
+                    // a non empty line that belongs to one of the parts
+                    switch (part) {
+                        case 1: // game board (lines)
+                            if (board == null) {
+                                board = new BoardBuilder(length(buffer, from, to, lineCpt));
+                            }
+                            parseRow(buffer, from, to, lineCpt, board, rows++);
+                            break;
+                        case 2: // ghosts and pacman
+                            elements.add(parseElement(buffer, from, to, lineCpt));
+                            break;
+                        case 3: // fruits
+                            Fruit fruit = parseFruit(buffer, from, to, lineCpt);
+                            fruits.put(fruit.getKey(), fruit);
+                            if (fruits.size() > CellCode.MAX_FRUITS) {
+                                throw new ParseException("The level contains more than " + CellCode.MAX_FRUITS + " fruits", lineCpt);
+                            }
+                            break;
+                        case 4: // properties
+                            parseProperty(buffer, from, to, lineCpt, properties);
+                            break;
+                    }
+                }
+            }
+
+            if (stop + 1 < end && buffer.get(stop) == '\r' && buffer.get(stop + 1) == '\n') {
+                stop++;
+            }
+            start = stop + 1;
+        }
+
+        // check the number of the bord lines
+        if (board == null) {
+            board = new BoardBuilder(0);
+        } else if (rows < board.size()) {
+            throw new ParseException("The board contains " + rows + " lines. Should be " + board.size(), firstBoardLine);
+        }
+
+        // make the new Level instance
+        return board.build(elements, fruits, properties);
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Parse a line representing a board row and write its cells in the board
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte of the line
+     * @param to     the index following the last byte of the line
+     * @param lineNb the line number
+     * @param board  the board
+     * @param y      the row index
+     * @throws ParseException if the row length is not the board size, or if
+     *                        the board has more than CellCode.MAX_FRUITS
+     *                        different keys
+     */
+    private void parseRow(ByteBuffer buffer, int from, int to, int lineNb, BoardBuilder board, int y) throws ParseException {
+        int size = board.size();
+        if (y >= size) {
+            throw new ParseException("The board contains more than " + size + " lines", lineNb);
+        }
+        int length = length(buffer, from, to, lineNb);
+        if (length != size) {
+            throw new ParseException("The line \"" + text(buffer, from, to) + "\" contains " + length + " characters. Should be " + size, lineNb);
+        }
+
+        boolean written = true;
+        if (length == to - from) {
+            // ASCII row, each byte is a cell
+            for (int x = 0; x < size; x++) {
+                written &= board.set(x, y, (char) buffer.get(from + x));
+            }
+        } else {
+            String line = decode(buffer, from, to, lineNb);
+            for (int x = 0; x < size; x++) {
+                written &= board.set(x, y, line.charAt(x));
+            }
+        }
+        if (!written) {
+            throw new ParseException("The board contains more than " + CellCode.MAX_FRUITS
+                    + " different keys, the maximum number of fruits of a level", lineNb);
+        }
+    }
+
+    /**
+     * Give the number of characters of the given bytes
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte
+     * @param to     the index following the last byte
+     * @param lineNb the line number
+     * @return the number of UTF-16 characters encoded by the bytes
+     * @throws ParseException if the bytes are not valid UTF-8
+     */
+    private int length(ByteBuffer buffer, int from, int to, int lineNb) throws ParseException {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) < 0) {
+                return decode(buffer, from, to, lineNb).length();
+            }
+        }
+        return to - from;
+    }
+
+    /**
+     * Parse a line representing a fruit
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte of the line in the form
+     *               key,name,value
+     * @param to     the index following the last byte of the line
+     * @param lineNb the line number
+     * @return the fruit
+     * @throws ParseException if the line format is not valid
+     */
+    private Fruit parseFruit(ByteBuffer buffer, int from, int to, int lineNb) throws ParseException {
+        int first = checkTokens(buffer, from, to, lineNb);
+        int second = indexOf(buffer, ',', first + 1, to);
+
+        if (first == from) {
+            throw new ParseException("The line \"" + text(buffer, from, to) + "\" contains an empty key", lineNb);
+        }
+        byte head = buffer.get(from);
+        char key = head >= 0 ? (char) head : decode(buffer, from, first, lineNb).charAt(0); // the key
+        String name = decode(buffer, first + 1, second, lineNb); // the name
+        int value = parseInt(buffer, second + 1, to, from, lineNb); // the value
+
+        if (name.isEmpty()) {
+            throw new ParseException("The line \"" + text(buffer, from, to) + "\" contains an empty name", lineNb);
+        }
+        if (value <= 0) {
+            throw new ParseException("The line \"" + text(buffer, from, to) + "\" contains an invalid value: " + value + ". Should be greater than 0", lineNb);
+        }
+
+        // give the canonical Fruit instance
+        return Interning.fruit(key, name, value);
+    }
+
+    /**
+     * Parse a line representing an element
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte of the line in the form name,x,y
+     * @param to     the index following the last byte of the line
+     * @param lineNb the line number
+     * @return the element
+     * @throws ParseException if the line format is not valid
+     */
+    private Element parseElement(ByteBuffer buffer, int from, int to, int lineNb) throws ParseException {
+        int first = checkTokens(buffer, from, to, lineNb);
+        int second = indexOf(buffer, ',', first + 1, to);
+
+        int x = parseInt(buffer, first + 1, second, from, lineNb);
+        int y = parseInt(buffer, second + 1, to, from, lineNb);
+
+        if (first == from) {
+            throw new ParseException("The line \"" + text(buffer, from, to) + "\" contains an empty name", lineNb);
+        }
+        if (x < 0 || y < 0) {
+            throw new ParseException("The line \"" + text(buffer, from, to) + "\" contains an invalid value: (" + x + "," + y + "). x and y should be greater or equal to 0", lineNb);
+        }
+
+        if (matches(buffer, from, first, "pacman")) {
+            // make a new Pacman instance
+            return new PacmanImpl(x, y);
+        }
+        // make a new Ghost instance
+        return new GhostImpl(x, y, Interning.name(decode(buffer, from, first, lineNb)));
+    }
+
+    /**
+     * Parse a line representing a property and add it to the given properties
+     *
+     * @param buffer     the level description
+     * @param from       the index of the first byte of the line in the form
+     *                   key=value
+     * @param to         the index following the last byte of the line
+     * @param lineNb     the line number
+     * @param properties the properties to complete
+     * @throws ParseException if the line format is not valid
+     */
+    private void parseProperty(ByteBuffer buffer, int from, int to, int lineNb, Properties properties) throws ParseException {
+        int separator = indexOf(buffer, '=', from, to);
+        if (separator < 0) {
+            throw new ParseException("The line \"" + text(buffer, from, to) + "\" contains no '='", lineNb);
+        }
+
+        int keyEnd = trimEnd(buffer, from, separator);
+        int valueStart = trimStart(buffer, separator + 1, to);
+        properties.put(decode(buffer, from, keyEnd, lineNb), decode(buffer, valueStart, to, lineNb));
+    }
+
+    /**
+     * Check that the given line contains exactly 3 tokens separated by commas
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte of the line
+     * @param to     the index following the last byte of the line
+     * @param lineNb the line number
+     * @return the index of the first comma
+     * @throws ParseException if the line does not contain 3 tokens
+     */
+    private int checkTokens(ByteBuffer buffer, int from, int to, int lineNb) throws ParseException {
+        int commas = 0;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == ',') {
+                commas++;
+            }
+        }
+        if (commas != 2) {
+            throw new ParseException("The line \"" + text(buffer, from, to) + "\" contains " + (commas + 1) + " tokens. Should be 3", lineNb);
+        }
+        return indexOf(buffer, ',', from, to);
+    }
+
+    /**
+     * Parse a decimal integer
+     *
+     * @param buffer    the level description
+     * @param from      the index of the first byte of the number
+     * @param to        the index following the last byte of the number
+     * @param lineStart the index of the first byte of the line (for the error
+     *                  message)
+     * @param lineNb    the line number
+     * @return the parsed integer
+     * @throws ParseException if the bytes do not represent an integer
+     */
+    private int parseInt(ByteBuffer buffer, int from, int to, int lineStart, int lineNb) throws ParseException {
+        from = trimStart(buffer, from, to);
+        to = trimEnd(buffer, from, to);
+
+        boolean negative = from < to && buffer.get(from) == '-';
+        int i = negative || (from < to && buffer.get(from) == '+') ? from + 1 : from;
+        if (i == to) {
+            throw new ParseException("The line \"" + text(buffer, lineStart, lineEnd(buffer, to)) + "\" contains an invalid number", lineNb);
+        }
+
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+                throw new ParseException("The line \"" + text(buffer, lineStart, lineEnd(buffer, to)) + "\" contains an invalid number", lineNb);
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+            throw new ParseException("The line \"" + text(buffer, lineStart, lineEnd(buffer, to)) + "\" contains an invalid number", lineNb);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Decode the given bytes as UTF-8
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte to decode
+     * @param to     the index following the last byte to decode
+     * @param lineNb the line number
+     * @return the decoded string
+     * @throws ParseException if the bytes are not valid UTF-8
+     */
+    private String decode(ByteBuffer buffer, int from, int to, int lineNb) throws ParseException {
+        int length = to - from;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(from + i);
+            scratch[i] = b;
+            ascii &= b >= 0;
+        }
+
+        if (ascii) {
+            return new String(scratch, 0, length, StandardCharsets.US_ASCII);
+        }
+        try {
+            return decoder.decode(ByteBuffer.wrap(scratch, 0, length)).toString();
+        } catch (CharacterCodingException e) {
+            throw new ParseException("The line \"" + text(buffer, from, to) + "\" is not valid UTF-8", lineNb);
+        }
+    }
+
+    /**
+     * Check whether a file is in the binary format
+     *
+     * @param channel the channel of the file (its position is not modified)
+     * @return true if the file begins with the magic number of the binary
+     * format
+     * @throws IOException if the file cannot be read
+     */
+    private static boolean isBinary(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+            // read until the 4 bytes are read or the end of the file
+        }
+        magic.flip();
+        return BinaryLevelFormat.matches(magic);
+    }
+
+    /**
+     * Decode the given bytes leniently, in order to build an error message
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte to decode
+     * @param to     the index following the last byte to decode
+     * @return the decoded string
+     */
+    private static String text(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Check whether the given bytes are the ASCII characters of the given
+     * string
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte
+     * @param to     the index following the last byte
+     * @param value  the expected string (ASCII only)
+     * @return true if the bytes represent the given string
+     */
+    private static boolean matches(ByteBuffer buffer, int from, int to, String value) {
+        if (to - from != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer.get(from + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Give the index of the first occurrence of the given ASCII character
+     *
+     * @param buffer the level description
+     * @param c      the searched character
+     * @param from   the index of the first byte to check
+     * @param to     the index following the last byte to check
+     * @return the index of the character, -1 if it is not found
+     */
+    private static int indexOf(ByteBuffer buffer, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Give the index following the end of the line that contains the given
+     * index
+     *
+     * @param buffer the level description
+     * @param index  an index in the line
+     * @return the index of the line terminator (or the buffer limit)
+     */
+    private static int lineEnd(ByteBuffer buffer, int index) {
+        while (index < buffer.limit() && buffer.get(index) != '\n' && buffer.get(index) != '\r') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Skip the blank characters (as {@link String#trim()} does) at the
+     * beginning of the given bytes
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte
+     * @param to     the index following the last byte
+     * @return the index of the first non blank byte (to if there is none)
+     */
+    private static int trimStart(ByteBuffer buffer, int from, int to) {
+        while (from < to && (buffer.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Skip the blank characters (as {@link String#trim()} does) at the end of
+     * the given bytes
+     *
+     * @param buffer the level description
+     * @param from   the index of the first byte
+     * @param to     the index following the last byte
+     * @return the index following the last non blank byte (from if there is
+     * none)
+     */
+    private static int trimEnd(ByteBuffer buffer, int from, int to) {
+        while (to > from && (buffer.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,148 @@
+package data;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable pack of levels loaded at once by a {@link LevelPackLoader}.
+ * The levels are indexed by their number (N in the file name "levelN"), the
+ * levels that could not be loaded are reported by {@link #getErrors()}.
+ *
+ * @author Leia
+ * @inv getErrors() != null && getLevelCount() >= 0
+ */
+public class LevelPack {
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the numbers of the loaded levels, in increasing order
+     */
+    private final int[] numbers;
+
+    /**
+     * the loaded levels, in the order of their numbers
+     */
+    private final Level[] levels;
+
+    /**
+     * the errors that occurred while loading the levels, by file
+     */
+    private final Map<File, Exception> errors;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param numbers the numbers of the loaded levels, in increasing order
+     * @param levels  the unmodifiable loaded levels, in the order of their
+     *                numbers
+     * @param errors  the errors that occurred while loading the levels, by
+     *                file
+     * @pre numbers != null && levels != null && errors != null
+     * @pre numbers.length == levels.length
+     */
+    LevelPack(int[] numbers, Level[] levels, Map<File, Exception> errors) {
+        assert numbers != null && levels != null && errors != null : "precondition violated";
+        assert numbers.length == levels.length : "precondition violated";
+
+        this.numbers = numbers.clone();
+        this.levels = levels.clone();
+        this.errors = Collections.unmodifiableMap(errors);
+
+        invariant();
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the number of loaded levels
+     *
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Check whether the level having the given number was loaded
+     *
+     * @param number the level number
+     * @return true if the level is in this pack
+     */
+    public boolean hasLevel(int number) {
+        return Arrays.binarySearch(numbers, number) >= 0;
+    }
+
+    /**
+     * Give the level having the given number
+     *
+     * @param number the level number
+     * @return the unmodifiable level
+     * @pre hasLevel(number)
+     * @post ret != null
+     */
+    public Level getLevel(int number) {
+        assert hasLevel(number) : "precondition violated";
+
+        return levels[Arrays.binarySearch(numbers, number)];
+    }
+
+    /**
+     * Give the errors that occurred while loading the levels
+     *
+     * @return the exceptions, by level file, in the order of the levels
+     * numbers (empty if all the levels were loaded)
+     */
+    public Map<File, Exception> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Give a game that iterates over the levels of this pack, in the order of
+     * their numbers. The levels that could not be loaded are skipped.
+     *
+     * @return a new game, starting at the first level of this pack
+     */
+    public Game game() {
+        return new Game() {
+
+            /**
+             * the index of the next level
+             */
+            private int next;
+
+            @Override
+            public Level nextLevel() {
+                assert hasNextLevel() : "precondition violated";
+
+                return levels[next++];
+            }
+
+            @Override
+            public boolean hasNextLevel() {
+                return next < levels.length;
+            }
+        };
+    }
+
+    //--------------------------------------------------------------
+    // Private method
+    //--------------------------------------------------------------
+
+    /**
+     * Check the class invariants
+     */
+    private void invariant() {
+        assert getErrors() != null && getLevelCount() >= 0 : "Invariant violated";
+    }
+}
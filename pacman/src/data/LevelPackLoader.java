@@ -0,0 +1,223 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A loader of all the levels of a directory at once. The files named
+ * "levelN" (or "levelN.bin", preferred when it is not older, as in
+ * {@link GameImpl}) are enumerated by a {@link LevelIndex}, then loaded and validated in parallel on
+ * a fork-join pool. Besides the format checks of the loading, the elements are
+ * checked to be on the board and not on a wall. The errors are collected in
+ * the resulting {@link LevelPack} instead of interrupting the loading.
+ *
+ * @author Leia
+ */
+public class LevelPackLoader {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the maximum number of files loaded sequentially by a task
+     */
+    private static final int THRESHOLD = 2;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the pool used to load the files
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * the cache of the loaded levels (null if the levels are not cached)
+     */
+    private final LevelCache cache;
+
+    //--------------------------------------------------------------
+    // Constructors
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor. The files are loaded on the common fork-join pool, without
+     * cache.
+     */
+    public LevelPackLoader() {
+        this(ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param pool  the pool used to load the files
+     * @param cache the cache of the loaded levels (null if the levels are not
+     *              cached)
+     * @pre pool != null
+     */
+    public LevelPackLoader(ForkJoinPool pool, LevelCache cache) {
+        assert pool != null : "precondition violated";
+
+        this.pool = pool;
+        this.cache = cache;
+    }
+
+    //--------------------------------------------------------------
+    // Public method
+    //--------------------------------------------------------------
+
+    /**
+     * Load all the levels of the given directory
+     *
+     * @param directory the directory that contains the levels files
+     * @return the pack of the loaded levels and the errors
+     * @throws IOException if the directory cannot be listed
+     * @pre directory.isDirectory()
+     * @post ret != null
+     */
+    public LevelPack load(File directory) throws IOException {
+        assert directory.isDirectory() : "precondition violated";
+
+        // enumerate the levels files
+        if (directory.list() == null) {
+            throw new IOException("The directory " + directory + " cannot be listed");
+        }
+        int[] numbers;
+        File[] files;
+        try (LevelIndex index = new LevelIndex(directory, false)) {
+            numbers = index.getLevelNumbers();
+            files = new File[numbers.length];
+            for (int i = 0; i < numbers.length; i++) {
+                files[i] = index.getEntry(numbers[i]).getFile();
+            }
+        }
+
+        // load them in parallel
+        Level[] levels = new Level[files.length];
+        Exception[] exceptions = new Exception[files.length];
+        pool.invoke(new LoadTask(files, levels, exceptions, 0, files.length));
+
+        // gather the results
+        int count = 0;
+        Map<File, Exception> errors = new LinkedHashMap<>();
+        for (int i = 0; i < files.length; i++) {
+            if (levels[i] != null) {
+                numbers[count] = numbers[i];
+                levels[count] = levels[i];
+                count++;
+            } else {
+                errors.put(files[i], exceptions[i]);
+            }
+        }
+        return new LevelPack(Arrays.copyOf(numbers, count), Arrays.copyOf(levels, count), errors);
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Check that the elements of the given level are on its board and not on
+     * a wall
+     *
+     * @param level the level to check
+     * @throws ParseException if an element is misplaced
+     */
+    private static void validate(Level level) throws ParseException {
+        for (Element element : level.getElements()) {
+            int x = element.getX();
+            int y = element.getY();
+            if (x >= level.getSize() || y >= level.getSize() || level.isWall(x, y)) {
+                String name = element instanceof Ghost ? ((Ghost) element).getName() : "pacman";
+                throw new ParseException("The element " + name + " at (" + x + "," + y + ") is out of the board or on a wall", 0);
+            }
+        }
+    }
+
+    //--------------------------------------------------------------
+    // Inner class
+    //--------------------------------------------------------------
+
+    /**
+     * The task that loads a range of files, split in two halves until the
+     * range is small enough. Each task writes only its own range of the
+     * results.
+     */
+    private class LoadTask extends RecursiveAction {
+
+        /**
+         * the serialization version
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * the files to load
+         */
+        private final File[] files;
+
+        /**
+         * the loaded levels (null when an error occurs)
+         */
+        private final Level[] levels;
+
+        /**
+         * the errors
+         */
+        private final Exception[] exceptions;
+
+        /**
+         * the index of the first file of the range
+         */
+        private final int from;
+
+        /**
+         * the index following the last file of the range
+         */
+        private final int to;
+
+        /**
+         * Constructor
+         *
+         * @param files      the files to load
+         * @param levels     the loaded levels
+         * @param exceptions the errors
+         * @param from       the index of the first file of the range
+         * @param to         the index following the last file of the range
+         */
+        LoadTask(File[] files, Level[] levels, Exception[] exceptions, int from, int to) {
+            this.files = files;
+            this.levels = levels;
+            this.exceptions = exceptions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LoadTask(files, levels, exceptions, from, middle),
+                        new LoadTask(files, levels, exceptions, middle, to));
+                return;
+            }
+
+            LevelLoader loader = new LevelLoader();
+            for (int i = from; i < to; i++) {
+                try {
+                    Level level = cache != null ? cache.get(files[i], loader) : UnmodifiableLevel.of(loader.load(files[i]));
+                    validate(level);
+                    levels[i] = level;
+                } catch (IOException | ParseException | RuntimeException e) {
+                    exceptions[i] = e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package data;
+
+import java.text.ParseException;
+import java.util.Properties;
+
+/**
+ * The typed settings of a level, parsed once from its properties:
+ * <ul>
+ * <li>wait_duration: the delay between two steps of the game (in ms)</li>
+ * <li>power_duration: the duration of the super power of pacman (in ms)</li>
+ * </ul>
+ * A missing property takes its default value. The settings are immutable:
+ * they are read in the game loop without lock nor parsing, and do not follow
+ * later changes of the properties, that are kept for the extensions.
+ *
+ * @author Leia
+ * @inv getWaitDuration() > 0 && getPowerDuration() > 0
+ */
+public final class LevelSettings {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the property of the delay between two steps of the game
+     */
+    public static final String WAIT_DURATION = "wait_duration";
+
+    /**
+     * the property of the duration of the super power
+     */
+    public static final String POWER_DURATION = "power_duration";
+
+    /**
+     * the default delay between two steps of the game (in ms)
+     */
+    public static final int DEFAULT_WAIT_DURATION = 300;
+
+    /**
+     * the default duration of the super power (in ms)
+     */
+    public static final int DEFAULT_POWER_DURATION = 12000;
+
+    /**
+     * the settings of the levels that have none of the properties
+     */
+    public static final LevelSettings DEFAULTS = new LevelSettings(DEFAULT_WAIT_DURATION, DEFAULT_POWER_DURATION);
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the delay between two steps of the game (in ms)
+     */
+    private final int waitDuration;
+
+    /**
+     * the duration of the super power (in ms)
+     */
+    private final int powerDuration;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param waitDuration  the delay between two steps of the game (in ms)
+     * @param powerDuration the duration of the super power (in ms)
+     * @pre waitDuration > 0 && powerDuration > 0
+     */
+    public LevelSettings(int waitDuration, int powerDuration) {
+        assert waitDuration > 0 && powerDuration > 0 : "precondition violated";
+
+        this.waitDuration = waitDuration;
+        this.powerDuration = powerDuration;
+
+        invariant();
+    }
+
+    /**
+     * Parse the settings of a level, strictly, to report its invalid
+     * settings. The loaders do not use it: a level with an invalid setting is
+     * loaded, and the setting takes its default value.
+     *
+     * @param properties the level properties
+     * @return the settings
+     * @throws ParseException if a setting is not a positive integer
+     * @pre properties != null
+     * @post ret != null
+     */
+    public static LevelSettings parse(Properties properties) throws ParseException {
+        assert properties != null : "precondition violated";
+
+        return settings(properties, true);
+    }
+
+    /**
+     * Give the settings of a level, leniently: an invalid setting takes its
+     * default value
+     *
+     * @param properties the level properties
+     * @return the settings
+     * @pre properties != null
+     * @post ret != null
+     */
+    public static LevelSettings of(Properties properties) {
+        assert properties != null : "precondition violated";
+
+        try {
+            return settings(properties, false);
+        } catch (ParseException e) {
+            throw new AssertionError("a lenient parsing does not fail", e);
+        }
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the delay between two steps of the game
+     *
+     * @return the delay (in ms)
+     */
+    public int getWaitDuration() {
+        return waitDuration;
+    }
+
+    /**
+     * Give the duration of the super power of pacman
+     *
+     * @return the duration (in ms)
+     */
+    public int getPowerDuration() {
+        return powerDuration;
+    }
+
+    //--------------------------------------------------------------
+    // toString
+    //--------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return WAIT_DURATION + "=" + waitDuration + " " + POWER_DURATION + "=" + powerDuration;
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Parse the settings of a level, the same way for the strict and the
+     * lenient parsings
+     *
+     * @param properties the level properties
+     * @param strict     true to reject an invalid setting, false to give it
+     *                   its default value
+     * @return the settings
+     * @throws ParseException if a setting is not a positive integer and the
+     *                        parsing is strict
+     */
+    private static LevelSettings settings(Properties properties, boolean strict) throws ParseException {
+        int waitDuration = setting(properties, WAIT_DURATION, DEFAULT_WAIT_DURATION, strict);
+        int powerDuration = setting(properties, POWER_DURATION, DEFAULT_POWER_DURATION, strict);
+        if (waitDuration == DEFAULT_WAIT_DURATION && powerDuration == DEFAULT_POWER_DURATION) {
+            return DEFAULTS;
+        }
+        return new LevelSettings(waitDuration, powerDuration);
+    }
+
+    /**
+     * Parse a setting
+     *
+     * @param properties   the level properties
+     * @param name         the property name
+     * @param defaultValue the value of a missing property
+     * @param strict       true to reject an invalid value, false to give it
+     *                     the default value
+     * @return the setting value
+     * @throws ParseException if the property is not a positive integer and the
+     *                        parsing is strict (the error offset is the index
+     *                        of the first invalid character of the value)
+     */
+    private static int setting(Properties properties, String name, int defaultValue, boolean strict) throws ParseException {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        if (!strict) {
+            return defaultValue;
+        }
+        throw new ParseException("The property " + name + " has an invalid value: " + value + ". Should be an integer greater than 0", invalidOffset(value));
+    }
+
+    /**
+     * Give the index of the first character of a value that prevents it from
+     * being a positive integer
+     *
+     * @param value the value
+     * @return the index of the first character that is not a digit, or the
+     * index of the number if it only has digits (it is 0 or too large)
+     */
+    private static int invalidOffset(String value) {
+        int start = 0;
+        while (start < value.length() && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        int index = start < value.length() && value.charAt(start) == '+' ? start + 1 : start;
+        while (index < value.length() && Character.isDigit(value.charAt(index))) {
+            index++;
+        }
+        return value.substring(index).trim().isEmpty() ? start : index;
+    }
+
+    /**
+     * Check the class invariants
+     */
+    private void invariant() {
+        assert getWaitDuration() > 0 && getPowerDuration() > 0 : "Invariant violated";
+    }
+}
@@ -0,0 +1,109 @@
+package data;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.TreeSet;
+
+/**
+ * A writer of levels in the text format read by the {@link LevelLoader}: the
+ * board, the elements, the fruits and the properties, each part beginning
+ * with a description line starting with #. The board is written row by row,
+ * so that very large levels are never held as text.
+ *
+ * @author Leia
+ */
+public final class LevelTextWriter {
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * No instance
+     */
+    private LevelTextWriter() {
+    }
+
+    //--------------------------------------------------------------
+    // Public method
+    //--------------------------------------------------------------
+
+    /**
+     * Write a level in the text format. The cells that are neither a wall nor
+     * a fruit are written with a key that is not a fruit key.
+     *
+     * @param level the level to write
+     * @param out   the output, not closed (it should encode in UTF-8, as
+     *              the loader decodes)
+     * @throws IOException if an error occurs while writing
+     * @pre level != null && out != null
+     */
+    public static void write(Level level, Writer out) throws IOException {
+        assert level != null && out != null : "precondition violated";
+
+        int size = level.getSize();
+        char[] keys = new char[level.getFruitCount()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = level.getFruitByIndex(i).getKey();
+        }
+        char empty = emptyKey(keys);
+
+        // the board
+        out.write("# Board (w: wall, others: fruits)\n");
+        char[] row = new char[size + 1];
+        row[size] = '\n';
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int fruit = level.getFruitIndex(x, y);
+                row[x] = level.isWall(x, y) ? 'w' : fruit >= 0 ? keys[fruit] : empty;
+            }
+            out.write(row);
+        }
+
+        // the elements
+        out.write("\n# Elements (name,x,y)\n");
+        ElementTable elements = level.getElementTable();
+        if (elements.hasPacman()) {
+            out.write("pacman," + elements.getPacmanX() + "," + elements.getPacmanY() + "\n");
+        }
+        for (int i = 0; i < elements.getGhostCount(); i++) {
+            out.write(elements.getGhostName(i) + "," + elements.getGhostX(i) + "," + elements.getGhostY(i) + "\n");
+        }
+
+        // the fruits
+        out.write("\n# Fruits (key,name,value)\n");
+        for (int i = 0; i < level.getFruitCount(); i++) {
+            Fruit fruit = level.getFruitByIndex(i);
+            out.write(fruit.getKey() + "," + fruit.getName() + "," + fruit.getValue() + "\n");
+        }
+
+        // the properties
+        out.write("\n# Properties (key=value)\n");
+        for (String name : new TreeSet<>(level.getProperties().stringPropertyNames())) {
+            out.write(name + "=" + level.getProperties().getProperty(name) + "\n");
+        }
+        out.flush();
+    }
+
+    //--------------------------------------------------------------
+    // Package method
+    //--------------------------------------------------------------
+
+    /**
+     * Give a key for the empty cells
+     *
+     * @param keys the fruits keys
+     * @return a printable key that is neither a fruit key nor the wall key
+     */
+    static char emptyKey(char[] keys) {
+        for (char candidate = '.'; ; candidate++) {
+            boolean used = candidate == 'w' || candidate == '#' || candidate == ',' || candidate == '=';
+            for (int i = 0; i < keys.length && !used; i++) {
+                used = keys[i] == candidate;
+            }
+            if (!used) {
+                return candidate;
+            }
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package data;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The navigation graph of the board of a level, derived from its walls:
+ * <ul>
+ * <li>the moves: for each cell, a 4-bit mask of the directions leading to an
+ * open cell (packed 8 cells per int)</li>
+ * <li>the nodes: the open cells that do not have exactly 2 open neighbours
+ * (the junctions and the dead ends), in the order of the cells</li>
+ * <li>the segments: the corridors that lead from a node to the next node,
+ * with their length in moves. Each corridor is a segment from each of its
+ * ends; the segments of a node are consecutive.</li>
+ * </ul>
+ * All the data are stored in int arrays. A graph is immutable; the graphs are
+ * cached by the hash of the walls of the board, so that the levels that have
+ * the same walls share the same graph and it is computed once. The cache is
+ * bounded by the estimated memory of its graphs, including their distance
+ * tables once they are computed.
+ *
+ * @author Leia
+ */
+public final class NavigationGraph {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the move towards the row above (dy = -1)
+     */
+    public static final int UP = 1;
+
+    /**
+     * the move towards the next column (dx = 1)
+     */
+    public static final int RIGHT = 2;
+
+    /**
+     * the move towards the row below (dy = 1)
+     */
+    public static final int DOWN = 4;
+
+    /**
+     * the move towards the previous column (dx = -1)
+     */
+    public static final int LEFT = 8;
+
+    /**
+     * the maximum number of rows/columns of a board that has a graph, so that
+     * its cells are indexed by ints
+     */
+    public static final int MAX_SIZE = 46340;
+
+    /**
+     * the maximum weight (in bytes) of the cached graphs
+     */
+    private static final long CACHE_WEIGHT = 256L << 20;
+
+    /**
+     * the cached graphs, by hash of the walls, from the least to the most
+     * recently used
+     */
+    private static final Map<Long, NavigationGraph> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * the current weight (in bytes) of the cached graphs (guarded by CACHE)
+     */
+    private static long cacheWeight;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the number of rows/columns of the board
+     */
+    private final int size;
+
+    /**
+     * the hash of the walls of the board
+     */
+    private final long hash;
+
+    /**
+     * the walls of the board (see {@link Level#getWallRow(int, int)}), to
+     * tell apart the boards that have the same hash
+     */
+    private final long[] walls;
+
+    /**
+     * the moves masks of the cells, 8 cells per int
+     */
+    private final int[] moves;
+
+    /**
+     * the cells (y * size + x) of the nodes, in increasing order
+     */
+    private final int[] nodeCells;
+
+    /**
+     * the index of the first segment of each node, followed by the number of
+     * segments
+     */
+    private final int[] firstSegments;
+
+    /**
+     * the node at the start of each segment
+     */
+    private final int[] segmentFrom;
+
+    /**
+     * the node at the end of each segment
+     */
+    private final int[] segmentTo;
+
+    /**
+     * the first move of each segment
+     */
+    private final int[] segmentDirections;
+
+    /**
+     * the number of moves of each segment
+     */
+    private final int[] segmentLengths;
+
+    /**
+     * the distances between the cells, computed on the first request (null
+     * until then)
+     */
+    private volatile DistanceTable distanceTable;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor. Build the graph of the given walls.
+     *
+     * @param size  the number of rows/columns of the board
+     * @param walls the walls of the board, row by row
+     * @param hash  the hash of the walls
+     */
+    private NavigationGraph(int size, long[] walls, long hash) {
+        this.size = size;
+        this.walls = walls;
+        this.hash = hash;
+        int words = (size + 63) >>> 6;
+        int cells = size * size;
+
+        // the moves and the nodes
+        this.moves = new int[(cells + 7) >>> 3];
+        int[] nodes = new int[16];
+        int nodeCount = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (isWall(walls, words, size, x, y)) {
+                    continue;
+                }
+                int mask = 0;
+                if (!isWall(walls, words, size, x, y - 1)) {
+                    mask |= UP;
+                }
+                if (!isWall(walls, words, size, x + 1, y)) {
+                    mask |= RIGHT;
+                }
+                if (!isWall(walls, words, size, x, y + 1)) {
+                    mask |= DOWN;
+                }
+                if (!isWall(walls, words, size, x - 1, y)) {
+                    mask |= LEFT;
+                }
+                int cell = y * size + x;
+                moves[cell >>> 3] |= mask << ((cell & 7) << 2);
+                if (Integer.bitCount(mask) != 2) {
+                    if (nodeCount == nodes.length) {
+                        nodes = Arrays.copyOf(nodes, nodeCount * 2);
+                    }
+                    nodes[nodeCount++] = cell;
+                }
+            }
+        }
+        this.nodeCells = Arrays.copyOf(nodes, nodeCount);
+
+        // the segments, by walking the corridors from each node
+        int segmentCount = 0;
+        for (int cell : nodeCells) {
+            segmentCount += Integer.bitCount(moves(cell));
+        }
+        this.firstSegments = new int[nodeCount + 1];
+        this.segmentFrom = new int[segmentCount];
+        this.segmentTo = new int[segmentCount];
+        this.segmentDirections = new int[segmentCount];
+        this.segmentLengths = new int[segmentCount];
+        int segment = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            firstSegments[node] = segment;
+            int start = nodeCells[node];
+            for (int direction = UP; direction <= LEFT; direction <<= 1) {
+                if ((moves(start) & direction) == 0) {
+                    continue;
+                }
+                int cell = start + dx(direction) + dy(direction) * size;
+                int previous = direction;
+                int length = 1;
+                while (Integer.bitCount(moves(cell)) == 2) {
+                    int next = moves(cell) & ~opposite(previous);
+                    cell += dx(next) + dy(next) * size;
+                    previous = next;
+                    length++;
+                }
+                segmentFrom[segment] = node;
+                segmentTo[segment] = Arrays.binarySearch(nodeCells, cell);
+                segmentDirections[segment] = direction;
+                segmentLengths[segment] = length;
+                segment++;
+            }
+        }
+        firstSegments[nodeCount] = segment;
+    }
+
+    /**
+     * Give the navigation graph of the given level, from the cache if a level
+     * with the same walls has already been seen
+     *
+     * @param level the level
+     * @return the navigation graph of the level board
+     * @throws IllegalArgumentException if the board has more than MAX_SIZE
+     *                                  rows/columns
+     * @pre level != null
+     * @post ret != null
+     */
+    public static NavigationGraph of(Level level) {
+        assert level != null : "precondition violated";
+
+        int size = level.getSize();
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("A board of " + size + " rows/columns is too large for a navigation graph (at most " + MAX_SIZE + ")");
+        }
+        int words = level.getWallRowWords();
+        long[] walls = new long[size * words];
+        for (int y = 0; y < size; y++) {
+            for (int word = 0; word < words; word++) {
+                walls[y * words + word] = level.getWallRow(y, word);
+            }
+        }
+        long hash = hash(size, walls);
+
+        synchronized (CACHE) {
+            NavigationGraph cached = CACHE.get(hash);
+            if (cached != null && cached.size == size && Arrays.equals(cached.walls, walls)) {
+                return cached;
+            }
+        }
+        NavigationGraph graph = new NavigationGraph(size, walls, hash);
+        if (graph.weight() > CACHE_WEIGHT) {
+            return graph; // not cached, so that it does not evict all the others
+        }
+        synchronized (CACHE) {
+            NavigationGraph previous = CACHE.put(hash, graph);
+            if (previous != null) {
+                cacheWeight -= previous.weight();
+            }
+            cacheWeight += graph.weight();
+            trimCache();
+        }
+        return graph;
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the number of rows/columns of the board
+     *
+     * @return the board size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Give the moves from the given cell
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     * @return the mask of the directions (UP, RIGHT, DOWN, LEFT) leading to an
+     * open cell, 0 for a wall
+     * @pre x >= 0 && x < getSize() && y >= 0 && y < getSize()
+     */
+    public int getMoves(int x, int y) {
+        assert x >= 0 && x < size && y >= 0 && y < size : "precondition violated";
+
+        return moves(y * size + x);
+    }
+
+    /**
+     * Give the number of nodes (the open cells that do not have exactly 2
+     * open neighbours)
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCells.length;
+    }
+
+    /**
+     * Give the node of the given cell
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     * @return the node index, -1 if the cell is not a node
+     * @pre x >= 0 && x < getSize() && y >= 0 && y < getSize()
+     */
+    public int getNode(int x, int y) {
+        assert x >= 0 && x < size && y >= 0 && y < size : "precondition violated";
+
+        int node = Arrays.binarySearch(nodeCells, y * size + x);
+        return node >= 0 ? node : -1;
+    }
+
+    /**
+     * Give the column index of a node
+     *
+     * @param node the node index
+     * @return the column index of the node cell
+     * @pre node >= 0 && node < getNodeCount()
+     */
+    public int getNodeX(int node) {
+        return nodeCells[node] % size;
+    }
+
+    /**
+     * Give the line index of a node
+     *
+     * @param node the node index
+     * @return the line index of the node cell
+     * @pre node >= 0 && node < getNodeCount()
+     */
+    public int getNodeY(int node) {
+        return nodeCells[node] / size;
+    }
+
+    /**
+     * Give the number of segments
+     *
+     * @return the number of segments (each corridor counts once from each of
+     * its ends)
+     */
+    public int getSegmentCount() {
+        return segmentLengths.length;
+    }
+
+    /**
+     * Give the first segment starting at a node. The segments of the node are
+     * the segments from getFirstSegment(node) to getFirstSegment(node + 1)
+     * excluded.
+     *
+     * @param node the node index, or getNodeCount()
+     * @return the index of the first segment of the node
+     * @pre node >= 0 && node <= getNodeCount()
+     */
+    public int getFirstSegment(int node) {
+        return firstSegments[node];
+    }
+
+    /**
+     * Give the node at the start of a segment
+     *
+     * @param segment the segment index
+     * @return the start node index
+     * @pre segment >= 0 && segment < getSegmentCount()
+     */
+    public int getSegmentFrom(int segment) {
+        return segmentFrom[segment];
+    }
+
+    /**
+     * Give the node at the end of a segment
+     *
+     * @param segment the segment index
+     * @return the end node index (the start node for a loop)
+     * @pre segment >= 0 && segment < getSegmentCount()
+     */
+    public int getSegmentTo(int segment) {
+        return segmentTo[segment];
+    }
+
+    /**
+     * Give the first move of a segment
+     *
+     * @param segment the segment index
+     * @return the direction (UP, RIGHT, DOWN or LEFT) taken from the start node
+     * @pre segment >= 0 && segment < getSegmentCount()
+     */
+    public int getSegmentDirection(int segment) {
+        return segmentDirections[segment];
+    }
+
+    /**
+     * Give the length of a segment
+     *
+     * @param segment the segment index
+     * @return the number of moves from the start node to the end node
+     * @pre segment >= 0 && segment < getSegmentCount()
+     */
+    public int getSegmentLength(int segment) {
+        return segmentLengths[segment];
+    }
+
+    /**
+     * Give the distances between the cells of the board. The table is
+     * computed on the first request, or read from the disk cache (see
+     * {@link DistanceTable}).
+     *
+     * @return the distance table
+     * @post ret != null
+     */
+    public DistanceTable getDistanceTable() {
+        DistanceTable table = distanceTable;
+        if (table == null) {
+            synchronized (this) {
+                table = distanceTable;
+                if (table == null) {
+                    table = DistanceTable.of(this);
+                    synchronized (CACHE) {
+                        // the table is counted in the weight of the cache if the graph is cached
+                        long weight = weight();
+                        distanceTable = table;
+                        if (CACHE.get(hash) == this) {
+                            if (weight + table.weight() > CACHE_WEIGHT) {
+                                // too heavy with its table: the graph leaves the cache, the others stay
+                                CACHE.remove(hash);
+                                cacheWeight -= weight;
+                            } else {
+                                cacheWeight += table.weight();
+                                trimCache();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    //--------------------------------------------------------------
+    // Package methods
+    //--------------------------------------------------------------
+
+    /**
+     * Give the hash of the walls of the board
+     *
+     * @return the board hash
+     */
+    long getHash() {
+        return hash;
+    }
+
+    /**
+     * Give the number of words of the walls of the board
+     *
+     * @return the number of words (size * the number of words of a row)
+     */
+    int getWallWordCount() {
+        return walls.length;
+    }
+
+    /**
+     * Give a word of the walls of the board (see
+     * {@link Level#getWallRow(int, int)})
+     *
+     * @param index the word index (y * the number of words of a row + word)
+     * @return the walls of 64 cells of a row
+     */
+    long getWallWord(int index) {
+        return walls[index];
+    }
+
+    /**
+     * Give the moves from a cell
+     *
+     * @param cell the cell (y * size + x)
+     * @return the moves mask
+     */
+    int moves(int cell) {
+        return (moves[cell >>> 3] >>> ((cell & 7) << 2)) & 0xF;
+    }
+
+    //--------------------------------------------------------------
+    // Static methods
+    //--------------------------------------------------------------
+
+    /**
+     * Give the horizontal move of a direction
+     *
+     * @param direction UP, RIGHT, DOWN or LEFT
+     * @return the difference between the new x and the current x
+     */
+    public static int dx(int direction) {
+        return direction == RIGHT ? 1 : direction == LEFT ? -1 : 0;
+    }
+
+    /**
+     * Give the vertical move of a direction
+     *
+     * @param direction UP, RIGHT, DOWN or LEFT
+     * @return the difference between the new y and the current y
+     */
+    public static int dy(int direction) {
+        return direction == DOWN ? 1 : direction == UP ? -1 : 0;
+    }
+
+    /**
+     * Give the opposite of a direction
+     *
+     * @param direction UP, RIGHT, DOWN or LEFT
+     * @return DOWN, LEFT, UP or RIGHT
+     */
+    public static int opposite(int direction) {
+        return ((direction << 2) | (direction >>> 2)) & 0xF;
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Estimate the memory used by this graph
+     *
+     * @return the estimated weight (in bytes), with the distance table if it
+     * is computed
+     */
+    private long weight() {
+        DistanceTable table = distanceTable;
+        return 256
+                + walls.length * 8L
+                + moves.length * 4L
+                + nodeCells.length * 4L
+                + firstSegments.length * 4L
+                + segmentFrom.length * 16L                   // the four arrays of the segments
+                + (table != null ? table.weight() : 0);
+    }
+
+    /**
+     * Evict the least recently used graphs until the maximum weight of the
+     * cache is respected (the graphs heavier than the maximum weight are
+     * never added). The caller holds the lock of CACHE.
+     */
+    private static void trimCache() {
+        Iterator<NavigationGraph> it = CACHE.values().iterator();
+        while (cacheWeight > CACHE_WEIGHT && it.hasNext()) {
+            cacheWeight -= it.next().weight();
+            it.remove();
+        }
+    }
+
+    /**
+     * Check whether a cell is a wall
+     *
+     * @param walls the walls of the board
+     * @param words the number of words of a row
+     * @param size  the number of rows/columns of the board
+     * @param x     the cell column index
+     * @param y     the cell line index
+     * @return true if the cell is a wall or is out of the board
+     */
+    private static boolean isWall(long[] walls, int words, int size, int x, int y) {
+        return x < 0 || y < 0 || x >= size || y >= size || (walls[y * words + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Hash the walls of a board
+     *
+     * @param size  the number of rows/columns of the board
+     * @param walls the walls of the board
+     * @return the hash of the board
+     */
+    private static long hash(int size, long[] walls) {
+        long hash = 0xCBF29CE484222325L ^ size;
+        for (long word : walls) {
+            hash = (hash ^ word) * 0x100000001B3L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+}
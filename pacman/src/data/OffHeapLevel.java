@@ -0,0 +1,216 @@
+package data;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * An implementation of the {@link Level} interface that keeps its board out
+ * of the Java heap: the {@link CellCode cell codes} are stored row by row in
+ * direct buffers, or in the board section of a memory-mapped
+ * {@link BinaryLevelFormat binary level file}. The board is then neither
+ * copied nor scanned by the garbage collector, and the processes that map the
+ * same file share its pages. The board is split in chunks of CHUNK_SIZE
+ * bytes, so that it may be larger than 2 GB. The boards of more than
+ * {@link NavigationGraph#MAX_SIZE} rows/columns have no navigation graph.
+ * <p>
+ * A level is immutable, even if its board is backed by a file: the file is
+ * mapped read-only.
+ *
+ * @author Leia
+ * @inv getElements() != null && getSize() >= 0 && getProperties() != null
+ */
+public class OffHeapLevel extends APackedLevel {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the log2 of the chunks size
+     */
+    static final int CHUNK_SHIFT = 30;
+
+    /**
+     * the number of cells of a chunk (1 GB)
+     */
+    static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
+    /**
+     * the mask giving the offset of a cell in its chunk
+     */
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the chunks of the board: the cell (x, y) is the byte
+     * (y * size + x) % CHUNK_SIZE of the chunk (y * size + x) / CHUNK_SIZE
+     */
+    private final ByteBuffer[] chunks;
+
+    /**
+     * true if the board is mapped from a file
+     */
+    private final boolean mapped;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param elements   the elements of this level
+     * @param size       the number of rows/columns of the board
+     * @param chunks     the chunks of the board (see {@link #chunkCount(int)}),
+     *                   the buffers are not copied
+     * @param mapped     true if the chunks are mapped from a file
+     * @param fruitTable the fruits table, indexed by the codes of the cells
+     * @param properties the level properties
+     * @pre elements != null && chunks != null && fruitTable != null && properties != null
+     * @pre chunks.length == chunkCount(size)
+     */
+    OffHeapLevel(Collection<Element> elements, int size, ByteBuffer[] chunks, boolean mapped, Fruit[] fruitTable, Properties properties) {
+        super(elements, size, fruitTable, properties);
+
+        assert chunks != null && chunks.length == chunkCount(size) : "precondition violated";
+
+        this.chunks = chunks;
+        this.mapped = mapped;
+
+        invariant();
+    }
+
+    /**
+     * Copy a level in direct buffers
+     *
+     * @param level the level to copy
+     * @return the copy of the level
+     * @pre level != null && level.getFruitCount() <= CellCode.MAX_FRUITS
+     * @post ret != null && ret.getSize() == level.getSize()
+     */
+    public static OffHeapLevel copyOf(Level level) {
+        assert level != null && level.getFruitCount() <= CellCode.MAX_FRUITS : "precondition violated";
+
+        int size = level.getSize();
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(size)];
+        long cellCount = (long) size * size;
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect((int) Math.min(CHUNK_SIZE, cellCount - i * CHUNK_SIZE));
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                long cell = (long) y * size + x;
+                chunks[(int) (cell >>> CHUNK_SHIFT)].put((int) (cell & CHUNK_MASK), CellCode.of(level, x, y));
+            }
+        }
+
+        Fruit[] table = new Fruit[level.getFruitCount()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = level.getFruitByIndex(i);
+        }
+        Properties properties = new Properties();
+        for (String name : level.getProperties().stringPropertyNames()) {
+            properties.setProperty(name, level.getProperties().getProperty(name));
+        }
+        return new OffHeapLevel(level.getElements(), size, chunks, false, table, properties);
+    }
+
+    /**
+     * Map a binary level file. The board stays in the file: it is read by
+     * the operating system when it is used, and shared with the other
+     * processes that map the file.
+     *
+     * @param file the binary level file
+     * @return the level of the file
+     * @throws IOException    if the file cannot be mapped
+     * @throws ParseException if the file is not a valid binary level
+     * @pre file != null
+     * @post ret != null
+     */
+    public static OffHeapLevel map(File file) throws IOException, ParseException {
+        assert file != null : "precondition violated";
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid once the channel is closed
+            return BinaryLevelFormat.map(channel);
+        }
+    }
+
+    /**
+     * Write a level in a binary level file, then map the file. The file is
+     * written under a temporary name then renamed, so that the processes that
+     * map it never see a partial file.
+     *
+     * @param level the level to write
+     * @param file  the binary level file, replaced if it exists
+     * @return the level mapped from the file
+     * @throws IOException if the file cannot be written or mapped
+     * @pre level != null && file != null && level.getFruitCount() <= CellCode.MAX_FRUITS
+     * @post ret != null && ret.getSize() == level.getSize()
+     */
+    public static OffHeapLevel write(Level level, File file) throws IOException {
+        assert level != null && file != null && level.getFruitCount() <= CellCode.MAX_FRUITS : "precondition violated";
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+        File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temporary))) {
+                BinaryLevelFormat.write(level, out);
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+
+        try {
+            return map(file);
+        } catch (ParseException e) {
+            throw new IOException("The file " + file + " was modified while it was written: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Give the number of chunks needed to store a board
+     *
+     * @param size the number of rows/columns of the board
+     * @return the number of chunks
+     */
+    static int chunkCount(int size) {
+        return (int) (((long) size * size + CHUNK_MASK) >>> CHUNK_SHIFT);
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Check whether the board is mapped from a file
+     *
+     * @return true if the board is mapped from a file, false if it is in
+     * direct buffers
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    @Override
+    protected byte getCode(int x, int y) {
+        long cell = (long) y * getSize() + x;
+        return chunks[(int) (cell >>> CHUNK_SHIFT)].get((int) (cell & CHUNK_MASK));
+    }
+}
@@ -0,0 +1,457 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * An implementation of the {@link Level} interface that describes a variant
+ * of a base level: the base board, shared and never copied, plus a sparse
+ * overlay of the cells that differ, and optionally other elements and
+ * properties. A lookup consults the overlay first, then the base level, so
+ * the memory of a family of variants grows with the number of edits and not
+ * with the number of boards.
+ * <p>
+ * The base board may be placed in a larger board, at a given offset: the
+ * cells outside the base board are walls (for example level2 is level1 padded
+ * with walls). A variant is immutable; it is created with a {@link Builder}.
+ *
+ * @author Leia
+ * @inv getElements() != null && getSize() >= 0 && getProperties() != null
+ */
+public class OverlayLevel extends APackedLevel {
+
+    //--------------------------------------------------------------
+    // Constant
+    //--------------------------------------------------------------
+
+    /**
+     * the key of the free slots of the overlay
+     */
+    private static final long FREE = -1;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the base level
+     */
+    private final Level base;
+
+    /**
+     * the column of the base board in this board
+     */
+    private final int offsetX;
+
+    /**
+     * the row of the base board in this board
+     */
+    private final int offsetY;
+
+    /**
+     * the changed cells (y * size + x), in an open addressing table (FREE for
+     * the free slots)
+     */
+    private final long[] cells;
+
+    /**
+     * the code of each changed cell
+     */
+    private final byte[] codes;
+
+    /**
+     * the number of changed cells
+     */
+    private final int changeCount;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param builder the builder of the variant
+     */
+    private OverlayLevel(Builder builder) {
+        super(builder.elements(), builder.size, Arrays.copyOf(builder.fruitTable, builder.fruitCount), builder.properties());
+
+        this.base = builder.base;
+        this.offsetX = builder.offsetX;
+        this.offsetY = builder.offsetY;
+        this.cells = builder.cells.clone();
+        this.codes = builder.codes.clone();
+        this.changeCount = builder.changeCount;
+
+        invariant();
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the base level
+     *
+     * @return the base level, shared by the variants
+     */
+    public Level getBase() {
+        return base;
+    }
+
+    /**
+     * Give the number of cells that differ from the base level (not counting
+     * the padding around the base board)
+     *
+     * @return the number of changed cells
+     */
+    public int getChangeCount() {
+        return changeCount;
+    }
+
+    @Override
+    protected byte getCode(int x, int y) {
+        int slot = find(cells, (long) y * getSize() + x);
+        return cells[slot] == FREE ? baseCode(base, x - offsetX, y - offsetY) : codes[slot];
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Give the code of a cell of the base level
+     *
+     * @param base the base level
+     * @param x    the cell column index in the base board
+     * @param y    the cell line index in the base board
+     * @return the {@link CellCode} of the cell, a wall outside the base board
+     */
+    private static byte baseCode(Level base, int x, int y) {
+        if (x < 0 || y < 0 || x >= base.getSize() || y >= base.getSize()) {
+            return CellCode.WALL;
+        }
+        return CellCode.of(base, x, y);
+    }
+
+    /**
+     * Find the slot of a cell in an open addressing table
+     *
+     * @param cells the table (its length is a power of 2, with a free slot)
+     * @param cell  the cell (y * size + x)
+     * @return the slot of the cell, or the free slot where it would be added
+     */
+    private static int find(long[] cells, long cell) {
+        int mask = cells.length - 1;
+        long hash = cell * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (cells[slot] != cell && cells[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    //--------------------------------------------------------------
+    // Inner class
+    //--------------------------------------------------------------
+
+    /**
+     * A builder of the variants of a base level. A builder may build several
+     * variants: each one is a copy of the changes made so far. The variants of
+     * a variant share its base level, so that the lookups never go through a
+     * chain of overlays.
+     */
+    public static class Builder {
+
+        /**
+         * the base level
+         */
+        private final Level base;
+
+        /**
+         * the number of rows/columns of the board
+         */
+        private final int size;
+
+        /**
+         * the column of the base board in the board
+         */
+        private final int offsetX;
+
+        /**
+         * the row of the base board in the board
+         */
+        private final int offsetY;
+
+        /**
+         * the changed cells, in an open addressing table
+         */
+        private long[] cells;
+
+        /**
+         * the code of each changed cell
+         */
+        private byte[] codes;
+
+        /**
+         * the number of changed cells
+         */
+        private int changeCount;
+
+        /**
+         * the fruits table: the fruits of the base level, then the added
+         * fruits
+         */
+        private Fruit[] fruitTable;
+
+        /**
+         * the number of fruits in the table
+         */
+        private int fruitCount;
+
+        /**
+         * the elements of the variant (null for the elements of the base
+         * level)
+         */
+        private Collection<Element> elements;
+
+        /**
+         * the properties that override the base properties
+         */
+        private final Properties overrides;
+
+        /**
+         * Create a builder of the variants of a level that have the same size
+         *
+         * @param base the base level (if it is itself a variant, its base
+         *             and its changes are used)
+         * @pre base != null
+         */
+        public Builder(Level base) {
+            this(base, base.getSize(), 0, 0);
+        }
+
+        /**
+         * Create a builder of the variants of a level that place its board
+         * in a larger board, surrounded by walls
+         *
+         * @param base    the base level
+         * @param size    the number of rows/columns of the variants
+         * @param offsetX the column of the base board in the variants
+         * @param offsetY the row of the base board in the variants
+         * @pre base != null && offsetX >= 0 && offsetY >= 0
+         * @pre offsetX + base.getSize() <= size && offsetY + base.getSize() <= size
+         */
+        public Builder(Level base, int size, int offsetX, int offsetY) {
+            assert base != null && offsetX >= 0 && offsetY >= 0 : "precondition violated";
+            assert offsetX + base.getSize() <= size && offsetY + base.getSize() <= size : "precondition violated";
+
+            this.fruitTable = new Fruit[Math.max(base.getFruitCount(), 4)];
+            this.fruitCount = base.getFruitCount();
+            for (int i = 0; i < fruitCount; i++) {
+                fruitTable[i] = base.getFruitByIndex(i);
+            }
+            this.overrides = new Properties();
+            if (base instanceof OverlayLevel && size == base.getSize()) {
+                // the changes of the variant are copied, its base is shared
+                OverlayLevel variant = (OverlayLevel) base;
+                this.base = variant.base;
+                this.offsetX = variant.offsetX + offsetX;
+                this.offsetY = variant.offsetY + offsetY;
+                this.cells = variant.cells.clone();
+                this.codes = variant.codes.clone();
+                this.changeCount = variant.changeCount;
+                this.overrides.putAll(variant.getProperties());
+                this.elements = variant.getElements() == variant.base.getElements() ? null : variant.getElements();
+            } else {
+                this.base = base;
+                this.offsetX = offsetX;
+                this.offsetY = offsetY;
+                this.cells = new long[16];
+                this.codes = new byte[16];
+                Arrays.fill(cells, FREE);
+                this.elements = offsetX == 0 && offsetY == 0 ? null : translate(base.getElements(), offsetX, offsetY);
+            }
+            this.size = size;
+        }
+
+        /**
+         * Put a wall in a cell
+         *
+         * @param x the cell column index
+         * @param y the cell line index
+         * @return this builder
+         * @pre x >= 0 && x < size && y >= 0 && y < size
+         */
+        public Builder setWall(int x, int y) {
+            set(x, y, CellCode.WALL);
+            return this;
+        }
+
+        /**
+         * Empty a cell: no wall and no fruit
+         *
+         * @param x the cell column index
+         * @param y the cell line index
+         * @return this builder
+         * @pre x >= 0 && x < size && y >= 0 && y < size
+         */
+        public Builder setEmpty(int x, int y) {
+            set(x, y, CellCode.EMPTY);
+            return this;
+        }
+
+        /**
+         * Put a fruit in a cell. A fruit that is not in the fruits table of
+         * the base level is added to the table of the variants.
+         *
+         * @param x     the cell column index
+         * @param y     the cell line index
+         * @param fruit the fruit
+         * @return this builder
+         * @pre x >= 0 && x < size && y >= 0 && y < size && fruit != null
+         * @throws IllegalStateException if the fruits table is full
+         */
+        public Builder setFruit(int x, int y, Fruit fruit) {
+            assert fruit != null : "precondition violated";
+
+            int index = 0;
+            while (index < fruitCount && !fruitTable[index].equals(fruit)) {
+                index++;
+            }
+            if (index == fruitCount) {
+                if (fruitCount == CellCode.MAX_FRUITS) {
+                    throw new IllegalStateException("A level cannot have more than " + CellCode.MAX_FRUITS + " fruits");
+                }
+                if (fruitCount == fruitTable.length) {
+                    fruitTable = Arrays.copyOf(fruitTable, fruitCount * 2);
+                }
+                fruitTable[fruitCount++] = fruit;
+            }
+            set(x, y, CellCode.ofFruit(index));
+            return this;
+        }
+
+        /**
+         * Replace the elements of the base level
+         *
+         * @param elements the elements of the variants (pacman and ghosts)
+         * @return this builder
+         * @pre elements != null
+         */
+        public Builder setElements(Collection<Element> elements) {
+            assert elements != null : "precondition violated";
+
+            this.elements = new ArrayList<>(elements);
+            return this;
+        }
+
+        /**
+         * Override a property of the base level
+         *
+         * @param key   the property key
+         * @param value the property value
+         * @return this builder
+         * @pre key != null && value != null
+         */
+        public Builder setProperty(String key, String value) {
+            assert key != null && value != null : "precondition violated";
+
+            overrides.setProperty(key, value);
+            return this;
+        }
+
+        /**
+         * Build a variant with the changes made so far
+         *
+         * @return the variant
+         * @post ret != null && ret.getSize() == size
+         */
+        public OverlayLevel build() {
+            return new OverlayLevel(this);
+        }
+
+        /**
+         * Change the code of a cell. The changes that restore the code of the
+         * base level are kept: they are rare and a lookup stays one probe.
+         *
+         * @param x    the cell column index
+         * @param y    the cell line index
+         * @param code the new code of the cell
+         */
+        private void set(int x, int y, byte code) {
+            assert x >= 0 && x < size && y >= 0 && y < size : "precondition violated";
+
+            if ((changeCount + 1) * 2 > cells.length) {
+                grow();
+            }
+            long cell = (long) y * size + x;
+            int slot = find(cells, cell);
+            if (cells[slot] == FREE) {
+                cells[slot] = cell;
+                changeCount++;
+            }
+            codes[slot] = code;
+        }
+
+        /**
+         * Double the capacity of the overlay table
+         */
+        private void grow() {
+            long[] oldCells = cells;
+            byte[] oldCodes = codes;
+            cells = new long[oldCells.length * 2];
+            codes = new byte[oldCells.length * 2];
+            Arrays.fill(cells, FREE);
+            for (int i = 0; i < oldCells.length; i++) {
+                if (oldCells[i] != FREE) {
+                    int slot = find(cells, oldCells[i]);
+                    cells[slot] = oldCells[i];
+                    codes[slot] = oldCodes[i];
+                }
+            }
+        }
+
+        /**
+         * Give the elements of the variants
+         *
+         * @return the elements: the elements of the base level if they are
+         * not replaced
+         */
+        private Collection<Element> elements() {
+            return elements == null ? base.getElements() : new ArrayList<>(elements);
+        }
+
+        /**
+         * Give the properties of the variants
+         *
+         * @return the overriding properties, whose defaults are the base
+         * properties
+         */
+        private Properties properties() {
+            Properties properties = new Properties(base.getProperties());
+            properties.putAll(overrides);
+            return properties;
+        }
+
+        /**
+         * Translate elements
+         *
+         * @param elements the elements
+         * @param dx       the translation along the columns
+         * @param dy       the translation along the rows
+         * @return the translated elements, in the same order
+         */
+        private static Collection<Element> translate(Collection<Element> elements, int dx, int dy) {
+            Collection<Element> translated = new ArrayList<>(elements.size());
+            for (Element element : elements) {
+                translated.add(element instanceof Ghost
+                        ? new GhostImpl(element.getX() + dx, element.getY() + dy, ((Ghost) element).getName())
+                        : new PacmanImpl(element.getX() + dx, element.getY() + dy));
+            }
+            return translated;
+        }
+    }
+}
@@ -1,12 +1,10 @@
 package data;
 
-import java.awt.*;
-
 /**
  * An implementation of the {@link Pacman} interface
  *
  * @author Leia
- * @inv getLocation() != null && getLocation().x >= 0 && getLocation().y >= 0
+ * @inv getX() >= 0 && getY() >= 0
  */
 public class PacmanImpl extends ElementImpl implements Pacman {
 
@@ -17,10 +15,11 @@ public class PacmanImpl extends ElementImpl implements Pacman {
     /**
      * Constructor
      *
-     * @param point the element location
-     * @pre point != null && point.x >= 0 && point.y >= 0
+     * @param x the element column number
+     * @param y the element row number
+     * @pre x >= 0 && y >= 0
      */
-    public PacmanImpl(Point point) {
-        super(point);
+    public PacmanImpl(int x, int y) {
+        super(x, y);
     }
 }
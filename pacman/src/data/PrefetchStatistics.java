@@ -0,0 +1,132 @@
+package data;
+
+/**
+ * The statistics of the background loading of the levels of a
+ * {@link GameImpl}: for each level handed out, whether the level loaded in the
+ * background was ready in time, was still being loaded, could not be loaded,
+ * or was not loaded in the background at all.
+ *
+ * @author Leia
+ */
+public class PrefetchStatistics {
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the number of levels that were loaded when they were requested
+     */
+    private long ready;
+
+    /**
+     * the number of levels that were still being loaded when they were
+     * requested
+     */
+    private long waited;
+
+    /**
+     * the number of levels that could not be loaded in the background and
+     * were loaded synchronously
+     */
+    private long failed;
+
+    /**
+     * the number of levels that were not loaded in the background
+     */
+    private long missed;
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the number of levels that were loaded when they were requested
+     *
+     * @return the number of levels ready in time
+     */
+    public synchronized long getReady() {
+        return ready;
+    }
+
+    /**
+     * Give the number of levels that were still being loaded when they were
+     * requested (the game waited for them)
+     *
+     * @return the number of levels not ready in time
+     */
+    public synchronized long getWaited() {
+        return waited;
+    }
+
+    /**
+     * Give the number of levels that could not be loaded in the background
+     * and were loaded synchronously
+     *
+     * @return the number of failed background loads
+     */
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Give the number of levels that were not loaded in the background
+     *
+     * @return the number of synchronous loads
+     */
+    public synchronized long getMissed() {
+        return missed;
+    }
+
+    /**
+     * Give the ratio of the levels that were ready in time among all the
+     * levels handed out
+     *
+     * @return the ratio, between 0 and 1 (0 if no level was handed out)
+     */
+    public synchronized double getReadyRatio() {
+        long total = ready + waited + failed + missed;
+        return total == 0 ? 0 : (double) ready / total;
+    }
+
+    //--------------------------------------------------------------
+    // Setters
+    //--------------------------------------------------------------
+
+    /**
+     * Count a level that was loaded when it was requested
+     */
+    synchronized void addReady() {
+        ready++;
+    }
+
+    /**
+     * Count a level that was still being loaded when it was requested
+     */
+    synchronized void addWaited() {
+        waited++;
+    }
+
+    /**
+     * Count a level that could not be loaded in the background
+     */
+    synchronized void addFailed() {
+        failed++;
+    }
+
+    /**
+     * Count a level that was not loaded in the background
+     */
+    synchronized void addMissed() {
+        missed++;
+    }
+
+    //--------------------------------------------------------------
+    // toString
+    //--------------------------------------------------------------
+
+    @Override
+    public synchronized String toString() {
+        return "ready=" + ready + " waited=" + waited + " failed=" + failed + " missed=" + missed;
+    }
+}
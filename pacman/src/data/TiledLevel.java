@@ -0,0 +1,114 @@
+package data;
+
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * An implementation of the {@link Level} interface for very large boards. The
+ * board is stored in square tiles of TILE_SIZE x TILE_SIZE {@link CellCode
+ * cell codes}, so that no array is as large as the board and the memory used
+ * is one byte per cell. The tiles whose cells all have the same code (for
+ * example the tiles full of walls) share a single array.
+ *
+ * @author Leia
+ * @inv getElements() != null && getSize() >= 0 && getProperties() != null
+ */
+public class TiledLevel extends APackedLevel {
+
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the log2 of the tiles size
+     */
+    public static final int TILE_SHIFT = 6;
+
+    /**
+     * the number of rows/columns of a tile
+     */
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+    /**
+     * the mask giving the location of a cell in its tile
+     */
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the tiles, row by row. Each tile holds its cells codes row by row.
+     */
+    private final byte[][] tiles;
+
+    /**
+     * the number of tiles in a row of tiles
+     */
+    private final int tilesPerRow;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param elements   the elements of this level
+     * @param size       the number of rows/columns of the board
+     * @param tiles      the tiles, row by row (see {@link #tileCount(int)}),
+     *                   the arrays are not copied
+     * @param fruitTable the fruits table, indexed by the codes of the cells
+     * @param properties the level properties
+     * @pre elements != null && tiles != null && fruitTable != null && properties != null
+     * @pre tiles.length == tileCount(size) * tileCount(size)
+     * @pre forAll (tile : tiles | tile.length == TILE_SIZE * TILE_SIZE)
+     */
+    public TiledLevel(Collection<Element> elements, int size, byte[][] tiles, Fruit[] fruitTable, Properties properties) {
+        super(elements, size, fruitTable, properties);
+
+        assert tiles != null && tiles.length == tileCount(size) * tileCount(size) : "precondition violated";
+
+        this.tiles = tiles;
+        this.tilesPerRow = tileCount(size);
+
+        invariant();
+    }
+
+    /**
+     * Give the number of tiles needed to cover a row of the board
+     *
+     * @param size the number of rows/columns of the board
+     * @return the number of tiles in a row of tiles
+     */
+    public static int tileCount(int size) {
+        return (size + TILE_MASK) >>> TILE_SHIFT;
+    }
+
+    //--------------------------------------------------------------
+    // Getter
+    //--------------------------------------------------------------
+
+    @Override
+    protected byte getCode(int x, int y) {
+        return tiles[(y >>> TILE_SHIFT) * tilesPerRow + (x >>> TILE_SHIFT)][((y & TILE_MASK) << TILE_SHIFT) | (x & TILE_MASK)];
+    }
+
+    @Override
+    public long getWallRow(int y, int word) {
+        assert y >= 0 && y < getSize() && word >= 0 && word < getWallRowWords() : "precondition violated";
+
+        // a word of the row is the row of a single tile
+        byte[] tile = tiles[(y >>> TILE_SHIFT) * tilesPerRow + word];
+        int offset = (y & TILE_MASK) << TILE_SHIFT;
+        int length = Math.min(TILE_SIZE, getSize() - (word << TILE_SHIFT));
+        long bits = length == 64 ? 0 : -1L << length; // the cells beyond the row end
+        for (int i = 0; i < length; i++) {
+            if (tile[offset + i] == CellCode.WALL) {
+                bits |= 1L << i;
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,270 @@
+package data;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * An unmodifiable view of a {@link Level}: its elements collection and its
+ * properties cannot be modified through this view, so that a level can be
+ * shared safely, for example between several games through a
+ * {@link LevelCache}.
+ *
+ * @author Leia
+ * @inv getElements() != null && getSize() >= 0 && getProperties() != null
+ */
+public class UnmodifiableLevel implements Level {
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the viewed level
+     */
+    private final Level level;
+
+    /**
+     * the unmodifiable elements of the level
+     */
+    private final Collection<Element> elements;
+
+    /**
+     * a read-only copy of the level properties
+     */
+    private final Properties properties;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param level the viewed level, it should not be modified afterwards
+     * @pre level != null
+     */
+    private UnmodifiableLevel(Level level) {
+        assert level != null : "precondition violated";
+
+        this.level = level;
+        this.elements = Collections.unmodifiableCollection(level.getElements());
+        this.properties = new ReadOnlyProperties(level.getProperties());
+    }
+
+    /**
+     * Give an unmodifiable view of the given level
+     *
+     * @param level the level
+     * @return the level itself if it is already an unmodifiable view, else a
+     * new view
+     * @pre level != null
+     * @post ret != null
+     */
+    public static Level of(Level level) {
+        assert level != null : "precondition violated";
+
+        return level instanceof UnmodifiableLevel ? level : new UnmodifiableLevel(level);
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    @Override
+    public Collection<Element> getElements() {
+        return elements;
+    }
+
+    @Override
+    public int getSize() {
+        return level.getSize();
+    }
+
+    @Override
+    public boolean isWall(int x, int y) {
+        return level.isWall(x, y);
+    }
+
+    @Override
+    public int getWallRowWords() {
+        return level.getWallRowWords();
+    }
+
+    @Override
+    public long getWallRow(int y, int word) {
+        return level.getWallRow(y, word);
+    }
+
+    @Override
+    public Fruit getFruit(int x, int y) {
+        return level.getFruit(x, y);
+    }
+
+    @Override
+    public int getFruitIndex(int x, int y) {
+        return level.getFruitIndex(x, y);
+    }
+
+    @Override
+    public int getFruitValue(int x, int y) {
+        return level.getFruitValue(x, y);
+    }
+
+    @Override
+    public int getFruitCount() {
+        return level.getFruitCount();
+    }
+
+    @Override
+    public Fruit getFruitByIndex(int index) {
+        return level.getFruitByIndex(index);
+    }
+
+    @Override
+    public Properties getProperties() {
+        return properties;
+    }
+
+    @Override
+    public NavigationGraph getNavigationGraph() {
+        return level.getNavigationGraph();
+    }
+
+    @Override
+    public LevelSettings getSettings() {
+        return level.getSettings();
+    }
+
+    @Override
+    public ElementTable getElementTable() {
+        return level.getElementTable();
+    }
+
+    @Override
+    public ContentHash getContentHash() {
+        return level.getContentHash();
+    }
+
+    //--------------------------------------------------------------
+    // Inner class
+    //--------------------------------------------------------------
+
+    /**
+     * Properties that cannot be modified once they are initialized
+     */
+    private static class ReadOnlyProperties extends Properties {
+
+        /**
+         * the serialization version
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * false while the properties are initialized
+         */
+        private final boolean initialized;
+
+        /**
+         * an unmodifiable copy of the entries, used for the collection views
+         */
+        private final Map<Object, Object> view;
+
+        /**
+         * Constructor
+         *
+         * @param properties the properties to copy
+         */
+        ReadOnlyProperties(Properties properties) {
+            super();
+            for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+                super.put(entry.getKey(), entry.getValue());
+            }
+            this.view = Collections.unmodifiableMap(new HashMap<>(properties));
+            this.initialized = true;
+        }
+
+        @Override
+        public synchronized Object put(Object key, Object value) {
+            if (initialized) {
+                throw new UnsupportedOperationException("The level properties cannot be modified");
+            }
+            return super.put(key, value);
+        }
+
+        @Override
+        public synchronized Object remove(Object key) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized void putAll(Map<?, ?> t) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized void clear() {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized Object putIfAbsent(Object key, Object value) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized boolean remove(Object key, Object value) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized Object replace(Object key, Object value) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public synchronized Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            throw new UnsupportedOperationException("The level properties cannot be modified");
+        }
+
+        @Override
+        public Set<Object> keySet() {
+            return view.keySet();
+        }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return view.entrySet();
+        }
+
+        @Override
+        public Collection<Object> values() {
+            return view.values();
+        }
+    }
+}
@@ -1,22 +1,71 @@
 package logic;
 
-import data.Level;
-
+/**
+ * Implementation of the {@link Cell} interface: a view of a cell of the
+ * current level of a {@link GameImpl}. The cell holds no state: its content
+ * is read from the game, so it follows the steps and the levels of the game.
+ *
+ * @author Leia
+ */
 public class CellImpl implements Cell {
-    private int x;
-    private int y;
-    private Level level;
 
-    public CellImpl(Level level, int positionX, int positionY) {
-        this.level = level;
-        this.x = positionX;
-        this.y = positionY;
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the game of the cell
+     */
+    private final GameImpl game;
+
+    /**
+     * the cell column index
+     */
+    private final int x;
+
+    /**
+     * the cell line index
+     */
+    private final int y;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param game the game of the cell
+     * @param x    the cell column index
+     * @param y    the cell line index
+     * @pre game != null && x >= 0 && y >= 0
+     */
+    CellImpl(GameImpl game, int x, int y) {
+        assert game != null && x >= 0 && y >= 0 : "precondition violated";
+
+        this.game = game;
+        this.x = x;
+        this.y = y;
     }
 
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the cell column index
+     *
+     * @return the column index
+     */
     int getX() {
         return this.x;
     }
 
+    /**
+     * Give the cell line index
+     *
+     * @return the line index
+     */
     int getY() {
         return this.y;
     }
@@ -29,7 +78,7 @@ public class CellImpl implements Cell {
      */
     @Override
     public boolean isWall() {
-        return this.level.isWall(this.x, this.y);
+        return game.isWall(x, y);
     }
 
     /**
@@ -39,7 +88,7 @@ public class CellImpl implements Cell {
      */
     @Override
     public boolean hasPacman() {
-        return;
+        return game.hasPacman(x, y);
     }
 
     /**
@@ -50,7 +99,7 @@ public class CellImpl implements Cell {
      */
     @Override
     public String getGhost() {
-        return null;
+        return game.getGhost(x, y);
     }
 
     /**
@@ -62,6 +111,6 @@ public class CellImpl implements Cell {
      */
     @Override
     public String getFruit() {
-        return this.level.getFruit(this.x, this.y).getName();
+        return game.getFruit(x, y);
     }
 }
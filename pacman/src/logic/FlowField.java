@@ -0,0 +1,210 @@
+package logic;
+
+import data.NavigationGraph;
+
+import java.util.Arrays;
+
+/**
+ * The distances of the cells of a board to a source cell (the cell of
+ * pacman), computed by a breadth first search of the {@link NavigationGraph
+ * navigation graph}. The field is computed once when the source moves and is
+ * shared by all the ghosts: a ghost goes towards (or away from) the source by
+ * reading the distances of its neighbours, so that moving the ghosts costs
+ * one search per step whatever their number. The moves of the cells are read
+ * from the graph once per board, and the search steps from a cell to its
+ * neighbours by index offsets. The moves, the queue and the distances are
+ * arrays reused by the next searches and the next boards when they are large
+ * enough.
+ *
+ * @author Leia
+ */
+final class FlowField {
+
+    //--------------------------------------------------------------
+    // Constant
+    //--------------------------------------------------------------
+
+    /**
+     * the distance of the cells that cannot reach the source
+     */
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the number of rows/columns of the board
+     */
+    private int size;
+
+    /**
+     * the moves of each cell (y * size + x), read from the graph
+     */
+    private byte[] moves;
+
+    /**
+     * the distance of each cell to the source (y * size + x)
+     */
+    private int[] distances;
+
+    /**
+     * the queue of the cells of the search
+     */
+    private int[] queue;
+
+    /**
+     * the source cell of the distances (-1 if they are not computed)
+     */
+    private int source;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor: an empty field, to be {@link #reset(NavigationGraph) reset}
+     */
+    FlowField() {
+        this.moves = new byte[0];
+        this.distances = new int[0];
+        this.queue = new int[0];
+        this.source = -1;
+    }
+
+    //--------------------------------------------------------------
+    // Setters
+    //--------------------------------------------------------------
+
+    /**
+     * Use the field for a board. The distances are computed by the next
+     * {@link #update(int, int) update}.
+     *
+     * @param graph the navigation graph of the board
+     * @pre graph != null
+     */
+    void reset(NavigationGraph graph) {
+        assert graph != null : "precondition violated";
+
+        this.size = graph.getSize();
+        int cellCount = size * size;
+        if (distances.length < cellCount) {
+            moves = new byte[cellCount];
+            distances = new int[cellCount];
+            queue = new int[cellCount];
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                moves[y * size + x] = (byte) graph.getMoves(x, y);
+            }
+        }
+        source = -1;
+    }
+
+    /**
+     * Compute the distances to a source cell, unless they are already
+     * computed
+     *
+     * @param x the source column index
+     * @param y the source line index
+     * @pre x >= 0 && x < size && y >= 0 && y < size
+     */
+    void update(int x, int y) {
+        assert x >= 0 && x < size && y >= 0 && y < size : "precondition violated";
+
+        int start = y * size + x;
+        if (start == source) {
+            return;
+        }
+        source = start;
+        Arrays.fill(distances, 0, size * size, UNREACHABLE);
+        distances[start] = 0;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int cell = queue[head++];
+            int distance = distances[cell] + 1;
+            int cellMoves = moves[cell];
+            if ((cellMoves & NavigationGraph.UP) != 0) {
+                tail = visit(cell - size, distance, tail);
+            }
+            if ((cellMoves & NavigationGraph.RIGHT) != 0) {
+                tail = visit(cell + 1, distance, tail);
+            }
+            if ((cellMoves & NavigationGraph.DOWN) != 0) {
+                tail = visit(cell + size, distance, tail);
+            }
+            if ((cellMoves & NavigationGraph.LEFT) != 0) {
+                tail = visit(cell - 1, distance, tail);
+            }
+        }
+    }
+
+    /**
+     * Visit a cell of the search: if it is not reached yet, set its distance
+     * and append it to the queue
+     *
+     * @param cell     the cell
+     * @param distance the distance of the cell if it is not reached yet
+     * @param tail     the end of the queue
+     * @return the new end of the queue
+     */
+    private int visit(int cell, int distance, int tail) {
+        if (distances[cell] != UNREACHABLE) {
+            return tail;
+        }
+        distances[cell] = distance;
+        queue[tail] = cell;
+        return tail + 1;
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the distance of a cell to the source
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     * @return the number of moves from the source, UNREACHABLE if the cell
+     * cannot be reached
+     * @pre x >= 0 && x < size && y >= 0 && y < size
+     */
+    int getDistance(int x, int y) {
+        return source < 0 ? UNREACHABLE : distances[y * size + x];
+    }
+
+    /**
+     * Give the best directions from a cell: the ones that lead to the
+     * neighbours closest to the source, or farthest from it
+     *
+     * @param x       the cell column index
+     * @param y       the cell line index
+     * @param allowed the mask of the allowed directions (open directions of
+     *                the cell)
+     * @param away    true to go away from the source, false to go towards it
+     * @return the mask of the best directions, 0 if the cell cannot reach the
+     * source or no direction is allowed
+     * @pre x >= 0 && x < size && y >= 0 && y < size
+     */
+    int getDirections(int x, int y, int allowed, boolean away) {
+        if (getDistance(x, y) == UNREACHABLE) {
+            return 0;
+        }
+        int best = 0;
+        int bestDistance = 0;
+        for (; allowed != 0; allowed &= allowed - 1) {
+            int direction = Integer.lowestOneBit(allowed);
+            int distance = distances[(y + NavigationGraph.dy(direction)) * size + x + NavigationGraph.dx(direction)];
+            if (best == 0 || (away ? distance > bestDistance : distance < bestDistance)) {
+                best = direction;
+                bestDistance = distance;
+            } else if (distance == bestDistance) {
+                best |= direction;
+            }
+        }
+        return best;
+    }
+}
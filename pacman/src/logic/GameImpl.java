@@ -1,26 +1,248 @@
 package logic;
 
+import data.ElementTable;
 import data.Level;
+import data.LevelSettings;
+import data.NavigationGraph;
 
+import java.util.Arrays;
+
+/**
+ * Implementation of the {@link Game} interface. The state of the current
+ * level is kept in primitive arrays: the locations of pacman and of the
+ * ghosts, the fruits not eaten yet (a bitset), the power timer and the score. The arrays are
+ * sized when a level starts (and reused by the next levels when they are
+ * large enough), so that {@link #play(int, int)} allocates nothing. The
+ * {@link Cell cells} are views built once and shared by the levels: they read
+ * the state of the current level and never allocate.
+ * <p>
+ * The fruits of a level are found once, when it starts, in a bitset of its
+ * cells; the remaining fruits are a copy of it, and counters of the remaining
+ * fruits and points are updated as pacman eats, so that the completion and
+ * the {@link #getProgress() progress} of the level are known without looking
+ * at the board.
+ * <p>
+ * The ghosts are also indexed by cell in a {@link GhostGrid}, updated as
+ * they move, so that finding the ghosts of a cell (for the views and for the
+ * collisions with pacman) does not depend on the number of ghosts.
+ * <p>
+ * The moves are checked against the {@link NavigationGraph navigation graph}
+ * of the level. The ghosts chase pacman: at each step they take a shortest
+ * path towards him, read in a {@link FlowField} of the distances to his cell
+ * that is computed once for all the ghosts when he moves. Pacman gets the
+ * super power by eating the fruit named "Super"; then the ghosts flee, taking
+ * the open direction that leads farthest from him without turning back
+ * unless they are in a dead end, and the ghosts he meets go back to their
+ * initial locations; else he loses a life and all the elements go back to
+ * their initial locations. The ghosts that cannot reach pacman (or when the
+ * level has no pacman) wander at random. The level is finished when
+ * all its fruits are eaten.
+ *
+ * @author Leia
+ * @inv getScore() != null
+ * @inv !(!isFinished() && getScore().level() < 0)
+ */
 public class GameImpl implements Game {
 
-    private data.Game game;
+    //--------------------------------------------------------------
+    // Constants
+    //--------------------------------------------------------------
+
+    /**
+     * the name of the fruit that gives the super power
+     */
+    public static final String SUPER_FRUIT = "Super";
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the levels of the game
+     */
+    private final data.Game game;
+
+    /**
+     * the score of the game
+     */
+    private final ScoreImpl score;
+
+    /**
+     * the current level
+     */
     private Level level;
-    private Cell[][] cells;
-    private Score score;
-    private Pacman pacman;
 
+    /**
+     * the number of rows/columns of the board of the current level
+     */
+    private int size;
+
+    /**
+     * the navigation graph of the current level
+     */
+    private NavigationGraph graph;
+
+    /**
+     * the initial locations and the names of the elements of the current
+     * level
+     */
+    private ElementTable elements;
+
+    /**
+     * the views of the cells (y * cellStride + x), built when a level needs
+     * them and shared by all the levels: a view reads the state of its cell
+     * in the current level
+     */
+    private Cell[] cells;
+
+    /**
+     * the number of rows/columns of views in the cells array (the size of
+     * the largest level played)
+     */
+    private int cellStride;
+
+    /**
+     * the cells of the current level that have a fruit (bit y * size + x)
+     */
+    private long[] fruitCells;
+
+    /**
+     * the cells whose fruit has not been eaten yet (bit y * size + x)
+     */
+    private long[] remainingCells;
+
+    /**
+     * the number of fruits of the current level
+     */
+    private int fruitCount;
+
+    /**
+     * the number of fruits not eaten yet in the current level
+     */
+    private int remainingFruits;
+
+    /**
+     * the value of the fruits not eaten yet in the current level
+     */
+    private long remainingPoints;
+
+    /**
+     * the index of the super fruit in the fruits table of the current level
+     * (-1 if the level has none)
+     */
+    private int superFruit;
+
+    /**
+     * the column of pacman (-1 if the level has no pacman)
+     */
+    private int pacmanX;
+
+    /**
+     * the row of pacman (-1 if the level has no pacman)
+     */
+    private int pacmanY;
+
+    /**
+     * the number of ghosts of the current level
+     */
+    private int ghostCount;
+
+    /**
+     * the column of each ghost
+     */
+    private int[] ghostX;
+
+    /**
+     * the row of each ghost
+     */
+    private int[] ghostY;
+
+    /**
+     * the ghosts of each cell (y * size + x)
+     */
+    private final GhostGrid ghostGrid;
+
+    /**
+     * the distances to the cell of pacman, shared by the ghosts
+     */
+    private final FlowField flowField;
+
+    /**
+     * the last move of each ghost (0 if the ghost has not moved yet)
+     */
+    private int[] ghostDirections;
+
+    /**
+     * the settings of the current level, read once when it starts
+     */
+    private LevelSettings settings;
+
+    /**
+     * the number of steps of the super power
+     */
+    private int powerSteps;
+
+    /**
+     * the remaining steps of the super power (0 if pacman has no super power)
+     */
+    private int powerRemaining;
+
+    /**
+     * the state of the xorshift generator that moves the ghosts (never 0)
+     */
+    private long random;
+
+    /**
+     * true if the game is finished
+     */
+    private boolean finished;
+
+    //--------------------------------------------------------------
+    // Constructors
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor. The ghosts moves depend on the time of the creation.
+     *
+     * @param game the levels of the game
+     * @pre game != null && game.hasNextLevel()
+     */
     public GameImpl(data.Game game) {
+        this(game, System.nanoTime());
+    }
+
+    /**
+     * Constructor. The games created with the same seed and played with the
+     * same pacman moves are the same.
+     *
+     * @param game the levels of the game
+     * @param seed the seed of the ghosts moves
+     * @pre game != null && game.hasNextLevel()
+     */
+    public GameImpl(data.Game game, long seed) {
+        assert game != null && game.hasNextLevel() : "precondition violated";
+
         this.game = game;
-        this.level = this.game.nextLevel();
-        this.cells = new Cell[this.level.getSize()][this.level.getSize()];
-        for (int i = 0; i < this.cells.length; i++) {
-            for (int j = 0; j < this.cells.length; j++) {
-                this.cells[i][j] = new CellImpl(this.level, i, j);
-            }
-        }
+        this.score = new ScoreImpl();
+        this.random = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+        this.cells = new Cell[0];
+        this.fruitCells = new long[0];
+        this.remainingCells = new long[0];
+        this.ghostX = new int[0];
+        this.ghostY = new int[0];
+        this.ghostDirections = new int[0];
+        this.ghostGrid = new GhostGrid();
+        this.flowField = new FlowField();
+        startLevel(game.nextLevel());
+        skipEmptyLevels();
+
+        invariant();
     }
 
+    //--------------------------------------------------------------
+    // Game overriden methods
+    //--------------------------------------------------------------
+
     /**
      * Give the number of rows/columns in the game board for the current level.
      * Different invocations of this methods should return the same result if
@@ -33,7 +255,7 @@ public class GameImpl implements Game {
      */
     @Override
     public int getSize() {
-        return this.level.getSize();
+        return size;
     }
 
     /**
@@ -46,7 +268,7 @@ public class GameImpl implements Game {
      */
     @Override
     public int getWait() {
-        return 0;
+        return settings.getWaitDuration();
     }
 
     /**
@@ -64,7 +286,32 @@ public class GameImpl implements Game {
      */
     @Override
     public void play(int dx, int dy) {
+        assert !isFinished() : "precondition violated";
+        assert dx >= -1 && dx <= 1 && dy >= -1 && dy <= 1 : "precondition violated";
+        assert !(dx != 0 && dy != 0) : "precondition violated";
+
+        if (powerRemaining > 0) {
+            powerRemaining--;
+        }
 
+        // pacman moves if there is no wall, and eats the fruit of its new cell
+        if (pacmanX >= 0 && (dx != 0 || dy != 0) && (graph.getMoves(pacmanX, pacmanY) & direction(dx, dy)) != 0) {
+            pacmanX += dx;
+            pacmanY += dy;
+            eat();
+        }
+
+        // the ghosts met before and after their moves
+        if (collide()) {
+            moveGhosts();
+            collide();
+        }
+
+        if (!finished && remainingFruits == 0) {
+            skipEmptyLevels();
+        }
+
+        invariant();
     }
 
     /**
@@ -79,7 +326,10 @@ public class GameImpl implements Game {
      */
     @Override
     public Cell getCell(int x, int y) {
-        return null;
+        assert !isFinished() : "precondition violated";
+        assert x >= 0 && x < getSize() && y >= 0 && y < getSize() : "precondition violated";
+
+        return cells[y * cellStride + x];
     }
 
     /**
@@ -90,7 +340,7 @@ public class GameImpl implements Game {
      */
     @Override
     public boolean isFinished() {
-        return false;
+        return finished;
     }
 
     /**
@@ -100,7 +350,7 @@ public class GameImpl implements Game {
      */
     @Override
     public Score getScore() {
-        return this.score;
+        return score;
     }
 
     /**
@@ -111,6 +361,340 @@ public class GameImpl implements Game {
      */
     @Override
     public boolean hasSuperPower() {
-        return false;
+        return powerRemaining > 0;
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the number of fruits of the current level not eaten yet
+     *
+     * @return the number of remaining fruits
+     * @pre !isFinished()
+     */
+    public int getRemainingFruits() {
+        assert !isFinished() : "precondition violated";
+
+        return remainingFruits;
+    }
+
+    /**
+     * Give the value of the fruits of the current level not eaten yet
+     *
+     * @return the points that remain to win in the level
+     * @pre !isFinished()
+     */
+    public long getRemainingPoints() {
+        assert !isFinished() : "precondition violated";
+
+        return remainingPoints;
+    }
+
+    /**
+     * Give the progress of the current level
+     *
+     * @return the percentage of the fruits of the level that are eaten (100
+     * when the game is finished)
+     * @post ret >= 0 && ret <= 100
+     */
+    public int getProgress() {
+        if (finished || fruitCount == 0) {
+            return 100;
+        }
+        return (int) ((fruitCount - remainingFruits) * 100L / fruitCount);
+    }
+
+    //--------------------------------------------------------------
+    // Package methods (the state of the cells)
+    //--------------------------------------------------------------
+
+    /**
+     * Check whether a cell is a wall
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     * @return true if the cell is a wall
+     */
+    boolean isWall(int x, int y) {
+        return level.isWall(x, y);
+    }
+
+    /**
+     * Check whether pacman is in a cell
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     * @return true if pacman is in the cell
+     */
+    boolean hasPacman(int x, int y) {
+        return pacmanX == x && pacmanY == y;
+    }
+
+    /**
+     * Give the name of a ghost in a cell
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     * @return the name of one of the ghosts in the cell, null if there is
+     * none
+     */
+    String getGhost(int x, int y) {
+        int ghost = ghostGrid.getFirstGhost(y * size + x);
+        return ghost == GhostGrid.NONE ? null : elements.getGhostName(ghost);
+    }
+
+    /**
+     * Give the name of the fruit of a cell, if it has not been eaten
+     *
+     * @param x the cell column index
+     * @param y the cell line index
+     * @return the name of the fruit, null if the cell has no fruit
+     */
+    String getFruit(int x, int y) {
+        int cell = y * size + x;
+        if ((remainingCells[cell >>> 6] & 1L << cell) == 0) {
+            return null;
+        }
+        return level.getFruitByIndex(level.getFruitIndex(x, y)).getName();
+    }
+
+    //--------------------------------------------------------------
+    // Private methods
+    //--------------------------------------------------------------
+
+    /**
+     * Start a level: the fruits of the level are found, the elements are at
+     * their initial locations and no fruit is eaten, except the one under
+     * pacman
+     *
+     * @param next the level
+     */
+    private void startLevel(Level next) {
+        level = next;
+        size = next.getSize();
+        graph = next.getNavigationGraph();
+        elements = next.getElementTable();
+        if (size > cellStride) {
+            makeCells(size);
+        }
+
+        int cellCount = size * size;
+        int words = (cellCount + 63) >>> 6;
+        if (fruitCells.length < words) {
+            fruitCells = new long[words];
+            remainingCells = new long[words];
+        } else {
+            Arrays.fill(fruitCells, 0, words, 0);
+        }
+        fruitCount = 0;
+        long points = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int fruit = next.getFruitIndex(x, y);
+                if (fruit >= 0) {
+                    int cell = y * size + x;
+                    fruitCells[cell >>> 6] |= 1L << cell;
+                    fruitCount++;
+                    points += next.getFruitByIndex(fruit).getValue();
+                }
+            }
+        }
+        System.arraycopy(fruitCells, 0, remainingCells, 0, words);
+        remainingFruits = fruitCount;
+        remainingPoints = points;
+        superFruit = -1;
+        for (int i = 0; i < next.getFruitCount(); i++) {
+            if (SUPER_FRUIT.equals(next.getFruitByIndex(i).getName())) {
+                superFruit = i;
+            }
+        }
+
+        ghostCount = elements.getGhostCount();
+        if (ghostX.length < ghostCount) {
+            ghostX = new int[ghostCount];
+            ghostY = new int[ghostCount];
+            ghostDirections = new int[ghostCount];
+        }
+        ghostGrid.reset(cellCount, ghostCount);
+        flowField.reset(graph);
+        settings = next.getSettings();
+        powerSteps = Math.max(1, settings.getPowerDuration() / settings.getWaitDuration());
+
+        resetElements();
+        eat();
+    }
+
+    /**
+     * Build the views of the cells of the levels up to a given size. The
+     * views already built are kept.
+     *
+     * @param stride the number of rows/columns of views
+     */
+    private void makeCells(int stride) {
+        Cell[] views = new Cell[stride * stride];
+        for (int y = 0; y < stride; y++) {
+            for (int x = 0; x < stride; x++) {
+                views[y * stride + x] = x < cellStride && y < cellStride ? cells[y * cellStride + x] : new CellImpl(this, x, y);
+            }
+        }
+        cells = views;
+        cellStride = stride;
+    }
+
+    /**
+     * Go to the next level while the current one has no fruit left, or
+     * finish the game if it was the last level
+     */
+    private void skipEmptyLevels() {
+        while (remainingFruits == 0 && game.hasNextLevel()) {
+            score.changeLevel();
+            startLevel(game.nextLevel());
+        }
+        finished = remainingFruits == 0;
+    }
+
+    /**
+     * Put pacman and the ghosts at their initial locations, and remove the
+     * super power
+     */
+    private void resetElements() {
+        pacmanX = elements.hasPacman() ? elements.getPacmanX() : -1;
+        pacmanY = elements.hasPacman() ? elements.getPacmanY() : -1;
+        for (int i = 0; i < ghostCount; i++) {
+            moveGhost(i, elements.getGhostX(i), elements.getGhostY(i));
+            ghostDirections[i] = 0;
+        }
+        powerRemaining = 0;
+    }
+
+    /**
+     * Eat the fruit of the cell of pacman, if it has not been eaten
+     */
+    private void eat() {
+        if (pacmanX < 0) {
+            return;
+        }
+        int cell = pacmanY * size + pacmanX;
+        if ((remainingCells[cell >>> 6] & 1L << cell) != 0) {
+            remainingCells[cell >>> 6] &= ~(1L << cell);
+            int fruit = level.getFruitIndex(pacmanX, pacmanY);
+            int value = level.getFruitByIndex(fruit).getValue();
+            remainingFruits--;
+            remainingPoints -= value;
+            score.addPoints(value);
+            if (fruit == superFruit) {
+                powerRemaining = powerSteps;
+            }
+        }
+    }
+
+    /**
+     * Process the ghosts that are in the cell of pacman: with the super power,
+     * they go back to their initial locations; else pacman loses a life and
+     * all the elements go back to their initial locations
+     *
+     * @return true if the game goes on, false if the last life is lost
+     */
+    private boolean collide() {
+        if (pacmanX < 0) {
+            return true;
+        }
+        int ghost = ghostGrid.getFirstGhost(pacmanY * size + pacmanX);
+        while (ghost != GhostGrid.NONE) {
+            if (powerRemaining == 0) {
+                score.loseLife();
+                resetElements();
+                finished = score.lives() == 0;
+                return !finished;
+            }
+            int next = ghostGrid.getNextGhost(ghost);
+            moveGhost(ghost, elements.getGhostX(ghost), elements.getGhostY(ghost));
+            ghostDirections[ghost] = 0;
+            ghost = next;
+        }
+        return true;
+    }
+
+    /**
+     * Move each ghost towards pacman, or away from him if he has the super
+     * power. The ghosts that flee or wander do not turn back unless they are
+     * in a dead end. Among several best directions, one is picked at random.
+     */
+    private void moveGhosts() {
+        if (pacmanX >= 0) {
+            flowField.update(pacmanX, pacmanY);
+        }
+        boolean flee = powerRemaining > 0;
+        for (int i = 0; i < ghostCount; i++) {
+            int moves = graph.getMoves(ghostX[i], ghostY[i]);
+            int forward = moves & ~NavigationGraph.opposite(ghostDirections[i]);
+            if (forward != 0 && flee) {
+                moves = forward;
+            }
+            int best = pacmanX >= 0 ? flowField.getDirections(ghostX[i], ghostY[i], moves, flee) : 0;
+            if (best != 0) {
+                moves = best;
+            } else if (forward != 0) {
+                moves = forward;
+            }
+            if (moves != 0) {
+                int direction = pick(moves);
+                moveGhost(i, ghostX[i] + NavigationGraph.dx(direction), ghostY[i] + NavigationGraph.dy(direction));
+                ghostDirections[i] = direction;
+            }
+        }
+    }
+
+    /**
+     * Move a ghost to a cell, in the ghost locations and in the ghost grid
+     *
+     * @param ghost the ghost index
+     * @param x     the cell column index
+     * @param y     the cell line index
+     */
+    private void moveGhost(int ghost, int x, int y) {
+        ghostX[ghost] = x;
+        ghostY[ghost] = y;
+        ghostGrid.move(ghost, y * size + x);
+    }
+
+    /**
+     * Pick one of the given directions at random
+     *
+     * @param moves the mask of the directions
+     * @return one of the directions
+     * @pre moves != 0
+     */
+    private int pick(int moves) {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        int skip = (int) ((random >>> 1) % Integer.bitCount(moves));
+        for (int i = 0; i < skip; i++) {
+            moves &= moves - 1;
+        }
+        return Integer.lowestOneBit(moves);
+    }
+
+    /**
+     * Give the direction of a move
+     *
+     * @param dx the horizontal move
+     * @param dy the vertical move
+     * @return the direction (UP, RIGHT, DOWN or LEFT) of the navigation graph
+     * @pre (dx != 0) != (dy != 0)
+     */
+    private static int direction(int dx, int dy) {
+        return dx > 0 ? NavigationGraph.RIGHT : dx < 0 ? NavigationGraph.LEFT : dy > 0 ? NavigationGraph.DOWN : NavigationGraph.UP;
+    }
+
+    /**
+     * Check the class invariants
+     */
+    private void invariant() {
+        assert getScore() != null : "Invariant violated";
+        assert !(!isFinished() && getScore().level() < 0) : "Invariant violated";
     }
 }
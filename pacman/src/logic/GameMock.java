@@ -1,13 +1,11 @@
 package logic;
 
-import data.Element;
+import data.ElementTable;
 import data.Fruit;
-import data.Ghost;
 import java.awt.Point;
 import java.util.ArrayList;
 import java.util.List;
 import data.Level;
-import data.Pacman;
 
 /**
  * A mock that simulates the Game interface in order to be used instead of a
@@ -17,7 +15,11 @@ import data.Pacman;
  */
 public class GameMock implements Game
 {
-    private boolean[][] eaten;
+    /**
+     * the cells visited by pacman, whose fruit is eaten (bit y * size + x)
+     */
+    private final long[] eaten;
+
     /**
      * the initial level state
      */
@@ -33,6 +35,21 @@ public class GameMock implements Game
      */
     private final List<Point> ghostLocations;
 
+    /**
+     * the names of the ghosts, by index
+     */
+    private final String[] ghostNames;
+
+    /**
+     * the ghosts of each cell (y * size + x)
+     */
+    private final GhostGrid ghostGrid;
+
+    /**
+     * the views of the cells (y * size + x), built once
+     */
+    private final Cell[] cells;
+
     /**
      * Constructor
      *
@@ -41,14 +58,29 @@ public class GameMock implements Game
     public GameMock(data.Game game)
     {
         this.step = game.nextLevel();
-        this.eaten = new boolean[step.getSize()][step.getSize()];
+        this.eaten = new long[(step.getSize() * step.getSize() + 63) >>> 6];
         this.ghostLocations = new ArrayList<>();
-        for (Element element : step.getElements()) {
-            if (element instanceof Pacman) {
-                pacmanLocation = element.getLocation();
-                this.eaten[pacmanLocation.x][pacmanLocation.y] = true;
-            } else if (element instanceof Ghost) {
-                ghostLocations.add(element.getLocation());
+        ElementTable elements = step.getElementTable();
+        if (elements.hasPacman()) {
+            pacmanLocation = new Point(elements.getPacmanX(), elements.getPacmanY());
+            eat(pacmanLocation);
+        }
+        for (int i = 0; i < elements.getGhostCount(); i++) {
+            ghostLocations.add(new Point(elements.getGhostX(i), elements.getGhostY(i)));
+        }
+        this.ghostNames = new String[ghostLocations.size()];
+        for (int i = 0; i < ghostNames.length; i++) {
+            ghostNames[i] = "ghost-" + i;
+        }
+        this.ghostGrid = new GhostGrid();
+        ghostGrid.reset(step.getSize() * step.getSize(), ghostNames.length);
+        for (int i = 0; i < ghostNames.length; i++) {
+            ghostGrid.move(i, cellIndex(ghostLocations.get(i)));
+        }
+        this.cells = new Cell[step.getSize() * step.getSize()];
+        for (int y = 0; y < step.getSize(); y++) {
+            for (int x = 0; x < step.getSize(); x++) {
+                cells[y * step.getSize() + x] = new MockCell(x, y);
             }
         }
     }
@@ -70,55 +102,45 @@ public class GameMock implements Game
     {
         if (dx != 0 || dy != 0) {
             this.pacmanLocation = new Point(pacmanLocation.x + dx, pacmanLocation.y + dy);
-            this.eaten[pacmanLocation.x][pacmanLocation.y] = true;
+            eat(pacmanLocation);
             for (int i = 0; i < ghostLocations.size(); i++) {
                 Point location = ghostLocations.get(i);
                 ghostLocations.set(i, new Point(location.x + dx, location.y + dy));
+                ghostGrid.move(i, cellIndex(ghostLocations.get(i)));
             }
         }
     }
 
-    @Override
-    public Cell getCell(int x, int y)
+    /**
+     * Eat the fruit of a cell
+     *
+     * @param location the location of the cell
+     */
+    private void eat(Point location)
     {
-        return new Cell()
-        {
-            @Override
-            public boolean isWall()
-            {
-                return step.isWall(x, y);
-            }
-
-            @Override
-            public boolean hasPacman()
-            {
-                return pacmanLocation.x == x && pacmanLocation.y == y;
-            }
+        int cell = location.y * step.getSize() + location.x;
+        eaten[cell >>> 6] |= 1L << cell;
+    }
 
-            @Override
-            public String getFruit()
-            {
-                if (!isWall() && getGhost() == null && !hasPacman() && !eaten[x][y]) {
-                    Fruit fruit = step.getFruit(x, y);
-                    if (fruit != null) {
-                        return fruit.getName();
-                    }
-                }
-                return null;
-            }
+    /**
+     * Give the index of the cell of a location
+     *
+     * @param location the location
+     * @return y * size + x, GhostGrid.NONE if the location is out of the board
+     */
+    private int cellIndex(Point location)
+    {
+        int size = step.getSize();
+        if (location.x < 0 || location.y < 0 || location.x >= size || location.y >= size) {
+            return GhostGrid.NONE;
+        }
+        return location.y * size + location.x;
+    }
 
-            @Override
-            public String getGhost()
-            {
-                for (int i = 0; i < ghostLocations.size(); i++) {
-                    Point ghostLocation = ghostLocations.get(i);
-                    if (ghostLocation.x == x && ghostLocation.y == y) {
-                        return "ghost-" + i;
-                    }
-                }
-                return null;
-            }
-        };
+    @Override
+    public Cell getCell(int x, int y)
+    {
+        return cells[y * step.getSize() + x];
     }
 
     @Override
@@ -165,4 +187,64 @@ public class GameMock implements Game
             }
         };
     }
+
+    /**
+     * A view of a cell, that reads the current state of the mock
+     */
+    private class MockCell implements Cell
+    {
+        /**
+         * the cell column index
+         */
+        private final int x;
+
+        /**
+         * the cell line index
+         */
+        private final int y;
+
+        /**
+         * Constructor
+         *
+         * @param x the cell column index
+         * @param y the cell line index
+         */
+        MockCell(int x, int y)
+        {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean isWall()
+        {
+            return step.isWall(x, y);
+        }
+
+        @Override
+        public boolean hasPacman()
+        {
+            return pacmanLocation.x == x && pacmanLocation.y == y;
+        }
+
+        @Override
+        public String getFruit()
+        {
+            int cell = y * step.getSize() + x;
+            if (!isWall() && getGhost() == null && !hasPacman() && (eaten[cell >>> 6] & 1L << cell) == 0) {
+                Fruit fruit = step.getFruit(x, y);
+                if (fruit != null) {
+                    return fruit.getName();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String getGhost()
+        {
+            int ghost = ghostGrid.getFirstGhost(y * step.getSize() + x);
+            return ghost == GhostGrid.NONE ? null : ghostNames[ghost];
+        }
+    }
 }
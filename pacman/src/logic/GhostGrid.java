@@ -0,0 +1,163 @@
+package logic;
+
+import java.util.Arrays;
+
+/**
+ * The occupancy of the cells of a board by the ghosts: for each cell, the
+ * index of its first ghost, and for each ghost, the previous and the next
+ * ghosts of its cell (the ghosts that share a cell are linked in a list).
+ * Finding the ghosts of a cell, adding, removing or moving a ghost are
+ * constant time whatever the number of ghosts. All the data are int arrays,
+ * reused when the grid is reset for a board that is not larger.
+ *
+ * @author Leia
+ */
+final class GhostGrid {
+
+    //--------------------------------------------------------------
+    // Constant
+    //--------------------------------------------------------------
+
+    /**
+     * the index of no ghost, or of no cell
+     */
+    static final int NONE = -1;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the first ghost of each cell (NONE if the cell has no ghost)
+     */
+    private int[] firstGhosts;
+
+    /**
+     * the cell of each ghost (NONE if the ghost is not on the board)
+     */
+    private int[] cells;
+
+    /**
+     * the next ghost of the cell of each ghost (NONE for the last ghost)
+     */
+    private int[] nextGhosts;
+
+    /**
+     * the previous ghost of the cell of each ghost (NONE for the first ghost)
+     */
+    private int[] previousGhosts;
+
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor: an empty grid, to be {@link #reset(int, int) reset}
+     */
+    GhostGrid() {
+        this.firstGhosts = new int[0];
+        this.cells = new int[0];
+        this.nextGhosts = new int[0];
+        this.previousGhosts = new int[0];
+    }
+
+    //--------------------------------------------------------------
+    // Setters
+    //--------------------------------------------------------------
+
+    /**
+     * Empty the grid for a board and a number of ghosts. No ghost is on the
+     * board.
+     *
+     * @param cellCount  the number of cells of the board
+     * @param ghostCount the number of ghosts
+     * @pre cellCount >= 0 && ghostCount >= 0
+     */
+    void reset(int cellCount, int ghostCount) {
+        assert cellCount >= 0 && ghostCount >= 0 : "precondition violated";
+
+        if (firstGhosts.length < cellCount) {
+            firstGhosts = new int[cellCount];
+        }
+        Arrays.fill(firstGhosts, 0, cellCount, NONE);
+        if (cells.length < ghostCount) {
+            cells = new int[ghostCount];
+            nextGhosts = new int[ghostCount];
+            previousGhosts = new int[ghostCount];
+        }
+        Arrays.fill(cells, 0, ghostCount, NONE);
+    }
+
+    /**
+     * Move a ghost to a cell
+     *
+     * @param ghost the ghost index
+     * @param cell  the index of the new cell of the ghost (NONE to remove the
+     *              ghost from the board)
+     * @pre ghost >= 0 && cell >= NONE
+     */
+    void move(int ghost, int cell) {
+        if (cells[ghost] == cell) {
+            return;
+        }
+
+        // unlink the ghost from its cell
+        if (cells[ghost] != NONE) {
+            if (previousGhosts[ghost] == NONE) {
+                firstGhosts[cells[ghost]] = nextGhosts[ghost];
+            } else {
+                nextGhosts[previousGhosts[ghost]] = nextGhosts[ghost];
+            }
+            if (nextGhosts[ghost] != NONE) {
+                previousGhosts[nextGhosts[ghost]] = previousGhosts[ghost];
+            }
+        }
+
+        // link it first in its new cell
+        cells[ghost] = cell;
+        if (cell != NONE) {
+            previousGhosts[ghost] = NONE;
+            nextGhosts[ghost] = firstGhosts[cell];
+            if (firstGhosts[cell] != NONE) {
+                previousGhosts[firstGhosts[cell]] = ghost;
+            }
+            firstGhosts[cell] = ghost;
+        }
+    }
+
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
+    /**
+     * Give the first ghost of a cell
+     *
+     * @param cell the cell index
+     * @return the index of the ghost that entered the cell last, NONE if the
+     * cell has no ghost
+     */
+    int getFirstGhost(int cell) {
+        return firstGhosts[cell];
+    }
+
+    /**
+     * Give the next ghost of the cell of a ghost
+     *
+     * @param ghost the ghost index
+     * @return the index of the next ghost, NONE if it is the last one
+     * @pre getCell(ghost) != NONE
+     */
+    int getNextGhost(int ghost) {
+        return nextGhosts[ghost];
+    }
+
+    /**
+     * Give the cell of a ghost
+     *
+     * @param ghost the ghost index
+     * @return the cell index, NONE if the ghost is not on the board
+     */
+    int getCell(int ghost) {
+        return cells[ghost];
+    }
+}
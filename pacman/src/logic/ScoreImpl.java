@@ -1,37 +1,95 @@
 package logic;
 
-import data.Fruit;
-import data.Level;
-
+/**
+ * Implementation of the {@link Score} interface, updated by a
+ * {@link GameImpl} at each step
+ *
+ * @author Leia
+ * @inv lives() >= 0 && points() >= 0 && level() >= 1
+ */
 public class ScoreImpl implements Score {
 
+    //--------------------------------------------------------------
+    // Constant
+    //--------------------------------------------------------------
+
+    /**
+     * the number of lives at the beginning of a game
+     */
+    public static final int INITIAL_LIVES = 3;
+
+    //--------------------------------------------------------------
+    // Attributes
+    //--------------------------------------------------------------
+
+    /**
+     * the number of remaining lives
+     */
     private int numberOfLives;
+
+    /**
+     * the current level number
+     */
     private int levelNumber;
+
+    /**
+     * the sum of the values of the eaten fruits
+     */
     private int points;
-    private Level level;
 
-    public ScoreImpl(Level level) {
-        this.numberOfLives = 3;
+    //--------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------
+
+    /**
+     * Constructor: the score of the beginning of a game
+     */
+    ScoreImpl() {
+        this.numberOfLives = INITIAL_LIVES;
         this.points = 0;
         this.levelNumber = 1;
-        this.level = level;
+
+        invariant();
     }
 
+    //--------------------------------------------------------------
+    // Setters
+    //--------------------------------------------------------------
+
+    /**
+     * Remove a life
+     *
+     * @pre lives() > 0
+     */
     void loseLife() {
-        assert this.numberOfLives > 0;
+        assert this.numberOfLives > 0 : "precondition violated";
+
         this.numberOfLives--;
     }
 
+    /**
+     * Go to the next level
+     */
     void changeLevel() {
         this.levelNumber++;
     }
 
-    void addPoints(CellImpl cell) {
-        if (!cell.isWall() && cell.hasPacman()) {
-            this.points += level.getFruit(cell.getX(), cell.getY()).getValue();
-        }
+    /**
+     * Add the value of an eaten fruit
+     *
+     * @param value the value of the fruit
+     * @pre value >= 0
+     */
+    void addPoints(int value) {
+        assert value >= 0 : "precondition violated";
+
+        this.points += value;
     }
 
+    //--------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------
+
     /**
      * Give the number of remaining lives for the pacman
      *
@@ -62,4 +120,24 @@ public class ScoreImpl implements Score {
     public int level() {
         return this.levelNumber;
     }
+
+    //--------------------------------------------------------------
+    // toString
+    //--------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return "Lives: " + numberOfLives + ", Points: " + points + ", Level: " + levelNumber;
+    }
+
+    //--------------------------------------------------------------
+    // Private method
+    //--------------------------------------------------------------
+
+    /**
+     * Check the class invariants
+     */
+    private void invariant() {
+        assert lives() >= 0 && points() >= 0 && level() >= 1 : "Invariant violated";
+    }
 }
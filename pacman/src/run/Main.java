@@ -1,6 +1,7 @@
 package run;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * The application entry point
@@ -9,28 +10,42 @@ import java.io.File;
  */
 public class Main {
     private static void usage() {
-        System.out.println("Usage: java run.Main [resources_directory]");
+        System.out.println("Usage: java run.Main [resources_directory | levels_archive.zip | levels_archive.jar]");
         System.exit(-1);
     }
 
     /**
      * Launch the application
      *
-     * @param args command line arguments (the resources directory name)
+     * @param args command line arguments (the resources directory name, or
+     *             the name of an archive that contains the levels; by default
+     *             the levels are read from the classpath)
      */
     public static void main(String[] args) {
-        File directory = null;
+        data.Game dataGame = null;
 
-        if (args.length == 0) {
-            directory = new File("out/production/Pacman");
-        } else if (args.length != 1 || !new File(args[0]).isDirectory()) {
-            usage();
-        } else {
-            directory = new File(args[0]);
+        try {
+            if (args.length == 0) {
+                dataGame = data.ArchiveGame.fromClasspath(Main.class.getClassLoader(), "");
+            } else if (args.length != 1) {
+                usage();
+            } else if (new File(args[0]).isDirectory()) {
+                dataGame = new data.GameImpl(new File(args[0]), null, null, true);
+            } else if (new File(args[0]).isFile() && (args[0].endsWith(".zip") || args[0].endsWith(".jar"))) {
+                dataGame = data.ArchiveGame.open(new File(args[0]).toPath(), "/");
+            } else {
+                usage();
+            }
+        } catch (IOException e) {
+            if (args.length == 0 && new File("out/production/Pacman").isDirectory()) {
+                dataGame = new data.GameImpl(new File("out/production/Pacman"), null, null, true);
+            } else {
+                System.err.println("Error while opening the levels: " + e.getMessage());
+                usage();
+            }
         }
 
-        data.Game dataGame = new data.GameImpl(directory);
-        logic.Game logicGame = new logic.GameMock(dataGame);
+        logic.Game logicGame = new logic.GameImpl(dataGame);
         view.Game viewGame = new view.GameImpl(logicGame);
         viewGame.animate();
     }